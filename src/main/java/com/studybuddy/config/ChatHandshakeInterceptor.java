@@ -0,0 +1,67 @@
+package com.studybuddy.config;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseToken;
+import com.studybuddy.controller.ChatSocketHandler;
+import com.studybuddy.service.SessionMembershipCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Authenticates chat socket upgrades. Browsers can't set an Authorization header on a WebSocket,
+ * so the Firebase ID token comes in the query string alongside the session ID.
+ */
+@Component
+public class ChatHandshakeInterceptor implements HandshakeInterceptor {
+
+    @Autowired
+    private FirebaseAuth firebaseAuth;
+
+    @Autowired
+    private SessionMembershipCache sessionMembershipCache;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams();
+        String sessionId = params.getFirst("sessionId");
+        String token = params.getFirst("token");
+
+        if (sessionId == null || token == null) {
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            return false;
+        }
+
+        try {
+            FirebaseToken decodedToken = firebaseAuth.verifyIdToken(token);
+            String uid = decodedToken.getUid();
+
+            // Only participants may listen to a session's chat
+            if (!sessionMembershipCache.isParticipant(sessionId, uid)) {
+                response.setStatusCode(HttpStatus.FORBIDDEN);
+                return false;
+            }
+
+            attributes.put(ChatSocketHandler.SESSION_ID_ATTRIBUTE, sessionId);
+            attributes.put(ChatSocketHandler.UID_ATTRIBUTE, uid);
+            return true;
+        } catch (Exception e) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -1,11 +1,15 @@
 package com.studybuddy.config;
 
+import com.google.auth.oauth2.AccessToken;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreOptions;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.cloud.FirestoreClient;
+import com.google.firebase.internal.FirebaseProcessEnvironment;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,6 +19,7 @@ import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 @Configuration
 public class FirebaseConfig {
@@ -22,10 +27,25 @@ public class FirebaseConfig {
     @Value("${firebase.config.path:src/main/resources/firebase-service-account.json}")
     private String firebaseConfigPath;
 
+    // host:port of the Firebase emulators; when the Firestore one is set no credentials are loaded
+    @Value("${firebase.emulator.firestore-host:}")
+    private String firestoreEmulatorHost;
+
+    @Value("${firebase.emulator.auth-host:}")
+    private String authEmulatorHost;
+
+    @Value("${firebase.emulator.project-id:demo-studybuddy}")
+    private String emulatorProjectId;
+
+    @Autowired
+    private FirestoreBulkhead firestoreBulkhead;
+
     @PostConstruct
     public void initialize() {
         try {
-            if (FirebaseApp.getApps().isEmpty()) {
+            if (FirebaseApp.getApps().isEmpty() && !firestoreEmulatorHost.isEmpty()) {
+                initializeForEmulators();
+            } else if (FirebaseApp.getApps().isEmpty()) {
                 InputStream serviceAccount;
 
                 // Check for environment variable first (for cloud deployment)
@@ -39,11 +59,20 @@ public class FirebaseConfig {
                     System.out.println("Loading Firebase credentials from file");
                 }
 
-                FirebaseOptions options = FirebaseOptions.builder()
-                        .setCredentials(GoogleCredentials.fromStream(serviceAccount))
-                        .build();
+                FirebaseOptions.Builder options = FirebaseOptions.builder()
+                        .setCredentials(GoogleCredentials.fromStream(serviceAccount));
+
+                // Route every Firestore RPC through the bulkhead
+                if (firestoreBulkhead.isEnabled()) {
+                    options.setFirestoreOptions(FirestoreOptions.newBuilder()
+                            .setChannelProvider(FirestoreOptions.getDefaultTransportChannelProviderBuilder()
+                                    .setInterceptorProvider(() ->
+                                            List.of(new FirestoreBulkheadInterceptor(firestoreBulkhead)))
+                                    .build())
+                            .build());
+                }
 
-                FirebaseApp.initializeApp(options);
+                FirebaseApp.initializeApp(options.build());
                 System.out.println("Firebase initialized successfully!");
             }
         } catch (IOException e) {
@@ -52,6 +81,28 @@ public class FirebaseConfig {
         }
     }
 
+    /**
+     * Point Firestore and Auth at the local emulators. Nothing connects until the first call, so the
+     * application starts whether or not the emulators are running.
+     */
+    private void initializeForEmulators() {
+        if (!authEmulatorHost.isEmpty()) {
+            FirebaseProcessEnvironment.setenv("FIREBASE_AUTH_EMULATOR_HOST", authEmulatorHost);
+        }
+
+        FirebaseOptions options = FirebaseOptions.builder()
+                .setProjectId(emulatorProjectId)
+                // The emulators accept any token; "owner" bypasses Firestore security rules
+                .setCredentials(GoogleCredentials.create(new AccessToken("owner", null)))
+                .setFirestoreOptions(FirestoreOptions.newBuilder()
+                        .setEmulatorHost(firestoreEmulatorHost)
+                        .build())
+                .build();
+
+        FirebaseApp.initializeApp(options);
+        System.out.println("Firebase initialized against emulators at " + firestoreEmulatorHost);
+    }
+
     @Bean
     public FirebaseAuth firebaseAuth() {
         return FirebaseAuth.getInstance();
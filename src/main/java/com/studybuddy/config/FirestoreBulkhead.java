@@ -0,0 +1,83 @@
+package com.studybuddy.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many Firestore RPCs are in flight at once. With virtual threads there is no worker pool
+ * to act as a natural limit, so without this tens of thousands of blocked requests could pile onto
+ * the gRPC channel and the project's quota at the same time. Permits are taken per call by
+ * FirestoreBulkheadInterceptor on the Firestore channel, so background work is counted too.
+ */
+@Component
+public class FirestoreBulkhead {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${firestore.bulkhead.enabled:false}")
+    private boolean enabled;
+
+    @Value("${firestore.bulkhead.max-concurrent:200}")
+    private int maxConcurrent;
+
+    @Value("${firestore.bulkhead.max-wait-ms:2000}")
+    private long maxWaitMs;
+
+    private Semaphore permits;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxConcurrent, true);
+        rejectedCounter = meterRegistry.counter("firestore.bulkhead.rejected");
+        Gauge.builder("firestore.bulkhead.queue.depth", this, b -> b.permits.getQueueLength())
+                .register(meterRegistry);
+        Gauge.builder("firestore.bulkhead.in.flight", this, b -> b.maxConcurrent - b.permits.availablePermits())
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Take a permit; false means the call should be failed. Only request threads wait (up to the
+     * configured time) - anywhere else, such as a gRPC callback continuing an async chain, a full
+     * bulkhead fails the call straight away rather than parking a shared thread.
+     */
+    public boolean tryAcquire() {
+        if (isRequestThread() ? tryAcquireWaiting() : permits.tryAcquire()) {
+            return true;
+        }
+        rejectedCounter.increment();
+        return false;
+    }
+
+    private boolean tryAcquireWaiting() {
+        try {
+            return permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Request attributes are bound to the servlet thread for the duration of the request only
+    private static boolean isRequestThread() {
+        return RequestContextHolder.getRequestAttributes() != null;
+    }
+
+    public void release() {
+        permits.release();
+    }
+}
@@ -0,0 +1,112 @@
+package com.studybuddy.config;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds a bulkhead permit for every Firestore RPC from start to close, whoever issues it - request
+ * handlers, @Scheduled jobs, transactions and the write-behind flusher alike. The Listen and Write
+ * streams stay open for as long as a snapshot listener does, so they are left out rather than
+ * pinning permits forever. A call that can't get a permit fails with RESOURCE_EXHAUSTED - after
+ * up to firestore.bulkhead.max-wait-ms on a request thread, immediately on any other thread.
+ */
+public class FirestoreBulkheadInterceptor implements ClientInterceptor {
+
+    private static final Set<String> LONG_LIVED_STREAMS = Set.of(
+            "google.firestore.v1.Firestore/Listen",
+            "google.firestore.v1.Firestore/Write"
+    );
+
+    private final FirestoreBulkhead bulkhead;
+
+    public FirestoreBulkheadInterceptor(FirestoreBulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
+        if (!bulkhead.isEnabled() || LONG_LIVED_STREAMS.contains(method.getFullMethodName())) {
+            return call;
+        }
+        return new PermitHoldingCall<>(call);
+    }
+
+    private class PermitHoldingCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private boolean rejected;
+
+        PermitHoldingCall(ClientCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            if (!bulkhead.tryAcquire()) {
+                rejected = true;
+                responseListener.onClose(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Firestore bulkhead is full, please try again"), new Metadata());
+                return;
+            }
+
+            try {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        release();
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+
+        // A rejected call was never started, so nothing may be forwarded to it
+        @Override
+        public void request(int numMessages) {
+            if (!rejected) {
+                super.request(numMessages);
+            }
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            if (!rejected) {
+                super.sendMessage(message);
+            }
+        }
+
+        @Override
+        public void halfClose() {
+            if (!rejected) {
+                super.halfClose();
+            }
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            if (!rejected) {
+                super.cancel(message, cause);
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.studybuddy.config;
+
+import com.studybuddy.exception.BadRequestException;
+import com.studybuddy.service.SessionView;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Records how many body bytes session list and detail responses send to the browser, tagged by view,
+ * so the summary view's saving shows up next to the Firestore transfer metric. Chat and the other
+ * sub-resources under a session aren't session payloads and are left out.
+ */
+@Component
+public class ResponseSizeMetricsFilter extends OncePerRequestFilter {
+
+    // The list endpoints plus /api/sessions/{id}
+    private static final Pattern SESSION_PATHS = Pattern.compile("/api/sessions(/[^/]+)?");
+    private static final Set<String> LIST_PATHS = Set.of(
+            "/api/sessions", "/api/sessions/my-sessions", "/api/sessions/joined");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || !SESSION_PATHS.matcher(request.getRequestURI()).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        CountingResponse countingResponse = new CountingResponse(response);
+        filterChain.doFilter(request, countingResponse);
+
+        meterRegistry.summary("sessions.response.bytes", "view", viewTag(request))
+                .record(countingResponse.getByteCount());
+    }
+
+    // Only known views become tag values, so a made-up view parameter can't add a new series
+    private static String viewTag(HttpServletRequest request) {
+        SessionView view = SessionView.FULL;
+        if (LIST_PATHS.contains(request.getRequestURI())) {
+            try {
+                view = SessionView.fromParam(request.getParameter("view"));
+            } catch (BadRequestException e) {
+                // Rejected by the controller anyway
+            }
+        }
+        return view.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static class CountingResponse extends HttpServletResponseWrapper {
+        private CountingOutputStream outputStream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CountingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        long getByteCount() {
+            return outputStream != null ? outputStream.count : 0;
+        }
+    }
+
+    private static class CountingOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+        private long count;
+
+        CountingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.studybuddy.config;
+
+import com.studybuddy.controller.ChatSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    @Autowired
+    private ChatSocketHandler chatSocketHandler;
+
+    @Autowired
+    private ChatHandshakeInterceptor chatHandshakeInterceptor;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(chatSocketHandler, "/ws/chat")
+                .addInterceptors(chatHandshakeInterceptor);
+    }
+}
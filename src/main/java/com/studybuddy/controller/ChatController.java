@@ -10,48 +10,68 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/sessions/{sessionId}/chat")
 public class ChatController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private ChatService chatService;
 
     @PostMapping
-    public ResponseEntity<MessageResponse> sendMessage(
+    public CompletableFuture<ResponseEntity<MessageResponse>> sendMessage(
             @PathVariable String sessionId,
             @Valid @RequestBody MessageRequest request,
             Authentication authentication) {
         String uid = authentication.getName();
-        MessageResponse response = chatService.sendMessage(sessionId, request, uid);
-        return ResponseEntity.ok(response);
+        return chatService.sendMessage(sessionId, request, uid)
+                .thenApply(ResponseEntity::ok);
     }
 
     @GetMapping
-    public ResponseEntity<List<MessageResponse>> getMessages(
+    public CompletableFuture<ResponseEntity<List<MessageResponse>>> getMessages(
             @PathVariable String sessionId,
             @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer wait,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer limit,
             Authentication authentication) {
         String uid = authentication.getName();
-        List<MessageResponse> messages;
+        CompletableFuture<List<MessageResponse>> messages;
+
+        // Paged history: newest page first, older pages via the cursor in X-Next-Cursor
+        if (since == null && (before != null || limit != null)) {
+            return chatService.getMessagePage(sessionId, uid, before, limit)
+                    .thenApply(page -> {
+                        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                        if (page.getNextCursor() != null) {
+                            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+                        }
+                        return response.body(page.getMessages());
+                    });
+        }
 
-        if (since != null) {
+        if (since != null && wait != null) {
+            messages = chatService.waitForMessagesSince(sessionId, uid, since, wait);
+        } else if (since != null) {
             messages = chatService.getMessagesSince(sessionId, uid, since);
         } else {
             messages = chatService.getMessages(sessionId, uid);
         }
 
-        return ResponseEntity.ok(messages);
+        return messages.thenApply(ResponseEntity::ok);
     }
 
     @DeleteMapping("/{messageId}")
-    public ResponseEntity<Void> deleteMessage(
+    public CompletableFuture<ResponseEntity<Void>> deleteMessage(
             @PathVariable String sessionId,
             @PathVariable String messageId,
             Authentication authentication) {
         String uid = authentication.getName();
-        chatService.deleteMessage(sessionId, messageId, uid);
-        return ResponseEntity.ok().build();
+        return chatService.deleteMessage(sessionId, messageId, uid)
+                .thenApply(done -> ResponseEntity.ok().<Void>build());
     }
 }
@@ -0,0 +1,40 @@
+package com.studybuddy.controller;
+
+import com.studybuddy.service.ChatFanout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ * Push-only chat socket. Messages are still sent through the REST endpoint;
+ * the socket just receives them as they are saved.
+ */
+@Component
+public class ChatSocketHandler extends TextWebSocketHandler {
+
+    public static final String SESSION_ID_ATTRIBUTE = "sessionId";
+    public static final String UID_ATTRIBUTE = "uid";
+
+    @Autowired
+    private ChatFanout chatFanout;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession socket) {
+        String sessionId = (String) socket.getAttributes().get(SESSION_ID_ATTRIBUTE);
+        String uid = (String) socket.getAttributes().get(UID_ATTRIBUTE);
+        chatFanout.register(sessionId, uid, socket);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession socket, TextMessage message) {
+        // Nothing to do - clients only listen on this socket
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession socket, CloseStatus status) {
+        chatFanout.unregister(socket);
+    }
+}
@@ -2,9 +2,15 @@ package com.studybuddy.controller;
 
 import com.studybuddy.dto.SessionRequest;
 import com.studybuddy.dto.SessionResponse;
+import com.studybuddy.exception.ResourceNotFoundException;
+import com.studybuddy.service.SessionListing;
 import com.studybuddy.service.SessionService;
+import com.studybuddy.service.SessionView;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -16,21 +22,44 @@ import java.util.Map;
 @RequestMapping("/api/sessions")
 public class SessionController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Let browsers keep session responses but revalidate them with If-None-Match every time
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     @Autowired
     private SessionService sessionService;
 
     @GetMapping
-    public ResponseEntity<List<SessionResponse>> getAllSessions(
+    public ResponseEntity<List<?>> getAllSessions(
             @RequestParam(required = false) String year,
-            @RequestParam(required = false) String module) {
-        List<SessionResponse> sessions = sessionService.getAllSessions(year, module);
-        return ResponseEntity.ok(sessions);
+            @RequestParam(required = false) String module,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String view,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        SessionListing listing = sessionService.findOpenSessions(year, module, sort, limit, cursor, view);
+        return conditionalResponse(listing, ifNoneMatch);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<SessionResponse> getSession(@PathVariable String id) {
-        SessionResponse session = sessionService.getSessionById(id);
-        return ResponseEntity.ok(session);
+    public ResponseEntity<SessionResponse> getSession(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        SessionListing listing = sessionService.findSession(id);
+        if (listing.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(listing.getETag())
+                    .cacheControl(REVALIDATE)
+                    .build();
+        }
+        // A document that can't be mapped is skipped, leaving nothing to return
+        List<SessionResponse> sessions = sessionService.toSessionResponses(listing);
+        if (sessions.isEmpty()) {
+            throw new ResourceNotFoundException("Session not found");
+        }
+        return ResponseEntity.ok().eTag(listing.getETag()).cacheControl(REVALIDATE).body(sessions.get(0));
     }
 
     @PostMapping
@@ -43,15 +72,21 @@ public class SessionController {
     }
 
     @GetMapping("/my-sessions")
-    public ResponseEntity<List<SessionResponse>> getMySessions(Authentication authentication) {
-        List<SessionResponse> sessions = sessionService.getSessionsByCreator(authentication.getName());
-        return ResponseEntity.ok(sessions);
+    public ResponseEntity<List<?>> getMySessions(
+            @RequestParam(required = false) String view,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            Authentication authentication) {
+        SessionListing listing = sessionService.findSessionsByCreator(authentication.getName(), view);
+        return conditionalResponse(listing, ifNoneMatch);
     }
 
     @GetMapping("/joined")
-    public ResponseEntity<List<SessionResponse>> getJoinedSessions(Authentication authentication) {
-        List<SessionResponse> sessions = sessionService.getSessionsJoined(authentication.getName());
-        return ResponseEntity.ok(sessions);
+    public ResponseEntity<List<?>> getJoinedSessions(
+            @RequestParam(required = false) String view,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            Authentication authentication) {
+        SessionListing listing = sessionService.findSessionsJoined(authentication.getName(), view);
+        return conditionalResponse(listing, ifNoneMatch);
     }
 
     @PostMapping("/{id}/request")
@@ -96,4 +131,27 @@ public class SessionController {
         sessionService.kickParticipant(id, userId, authentication.getName());
         return ResponseEntity.ok(Map.of("message", "User kicked from session"));
     }
+
+    /**
+     * Answer 304 straight from the listing's ETag, only mapping sessions when the client's copy is stale.
+     * The next-page cursor travels in a header so the body stays a plain list.
+     */
+    private ResponseEntity<List<?>> conditionalResponse(SessionListing listing, String ifNoneMatch) {
+        boolean notModified = listing.matches(ifNoneMatch);
+        ResponseEntity.BodyBuilder response = notModified
+                ? ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                : ResponseEntity.ok();
+        response.eTag(listing.getETag()).cacheControl(REVALIDATE);
+        if (listing.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, listing.getNextCursor());
+        }
+
+        if (notModified) {
+            return response.build();
+        }
+        if (listing.getView() == SessionView.SUMMARY) {
+            return response.body(sessionService.toSessionSummaries(listing));
+        }
+        return response.body(sessionService.toSessionResponses(listing));
+    }
 }
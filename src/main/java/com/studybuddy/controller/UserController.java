@@ -1,6 +1,8 @@
 package com.studybuddy.controller;
 
 import com.studybuddy.dto.RatingRequest;
+import com.studybuddy.dto.UserBatchRequest;
+import com.studybuddy.dto.UserBatchResponse;
 import com.studybuddy.dto.UserResponse;
 import com.studybuddy.service.BlockService;
 import com.studybuddy.service.RatingService;
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/users")
@@ -28,21 +31,34 @@ public class UserController {
     private BlockService blockService;
 
     @GetMapping("/me")
-    public ResponseEntity<UserResponse> getCurrentUser(Authentication authentication) {
-        UserResponse user = userService.getUserProfile(authentication.getName());
-        return ResponseEntity.ok(user);
+    public CompletableFuture<ResponseEntity<UserResponse>> getCurrentUser(Authentication authentication) {
+        return userService.getUserProfileAsync(authentication.getName())
+                .thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/me/stats")
-    public ResponseEntity<Map<String, Object>> getCurrentUserStats(Authentication authentication) {
-        Map<String, Object> stats = userService.getUserStats(authentication.getName());
-        return ResponseEntity.ok(stats);
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getCurrentUserStats(Authentication authentication) {
+        return userService.getUserStatsAsync(authentication.getName())
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<UserBatchResponse>> getUsersBatch(
+            @Valid @RequestBody UserBatchRequest request) {
+        return userService.getUserSummariesAsync(request.getIds())
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/batch")
+    public CompletableFuture<ResponseEntity<UserBatchResponse>> getUsersBatch(@RequestParam List<String> ids) {
+        return userService.getUserSummariesAsync(ids)
+                .thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<UserResponse> getUserById(@PathVariable String id) {
-        UserResponse user = userService.getUserProfile(id);
-        return ResponseEntity.ok(user);
+    public CompletableFuture<ResponseEntity<UserResponse>> getUserById(@PathVariable String id) {
+        return userService.getUserProfileAsync(id)
+                .thenApply(ResponseEntity::ok);
     }
 
     @PutMapping("/me/modules")
@@ -63,9 +79,9 @@ public class UserController {
     }
 
     @GetMapping("/{id}/rating")
-    public ResponseEntity<Map<String, Object>> getUserRating(@PathVariable String id) {
-        Map<String, Object> stats = ratingService.getUserRatingStats(id);
-        return ResponseEntity.ok(stats);
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getUserRating(@PathVariable String id) {
+        return ratingService.getUserRatingStatsAsync(id)
+                .thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/{id}/my-rating")
@@ -115,18 +131,10 @@ public class UserController {
     }
 
     @GetMapping("/blocked/details")
-    public ResponseEntity<List<UserResponse>> getBlockedUsersDetails(Authentication authentication) {
+    public CompletableFuture<ResponseEntity<List<UserResponse>>> getBlockedUsersDetails(Authentication authentication) {
         List<String> blockedUserIds = blockService.getBlockedUsers(authentication.getName());
-        List<UserResponse> blockedUsers = blockedUserIds.stream()
-                .map(userId -> {
-                    try {
-                        return userService.getUserProfile(userId);
-                    } catch (Exception e) {
-                        return null;
-                    }
-                })
-                .filter(user -> user != null)
-                .collect(java.util.stream.Collectors.toList());
-        return ResponseEntity.ok(blockedUsers);
+        // Users who have since deleted their profile are left out
+        return userService.loadProfilesAsync(blockedUserIds)
+                .thenApply(loaded -> ResponseEntity.ok(loaded.getProfiles()));
     }
 }
@@ -0,0 +1,19 @@
+package com.studybuddy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBatchResponse {
+    // Found users, in the order their IDs were first given
+    private List<UserSummaryResponse> users;
+    // Requested IDs with no user document
+    private List<String> missing;
+}
@@ -0,0 +1,22 @@
+package com.studybuddy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummaryResponse {
+    private String id;
+    private String name;
+    private String email;
+    private String year;
+    private List<String> modules;
+    private Double averageRating;
+    private Integer ratingCount;
+}
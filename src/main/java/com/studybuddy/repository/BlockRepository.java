@@ -0,0 +1,29 @@
+package com.studybuddy.repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage for directed block edges (blocker -> blocked).
+ */
+public interface BlockRepository {
+
+    boolean exists(String blockerId, String blockedId);
+
+    void save(String blockerId, String blockedId);
+
+    /**
+     * Remove a block, returning false if there was nothing to remove
+     */
+    boolean delete(String blockerId, String blockedId);
+
+    /**
+     * IDs of users the given user has blocked
+     */
+    CompletableFuture<List<String>> findBlockedIds(String blockerId);
+
+    /**
+     * IDs of users who have blocked the given user
+     */
+    CompletableFuture<List<String>> findBlockerIds(String blockedId);
+}
@@ -0,0 +1,122 @@
+package com.studybuddy.repository;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static com.studybuddy.service.FirestoreFutures.toCompletable;
+
+/**
+ * Block edges stored as documents in the top-level blocks collection, keyed {blockerId}_{blockedId}
+ * so an edge is a point read and saving it twice writes the same document.
+ * While migrations.deterministic-ids.dual-read is on, edges still under auto-generated IDs are
+ * found with the old field query as well.
+ */
+@Repository
+@ConditionalOnProperty(name = "storage.chat.backend", havingValue = "firestore", matchIfMissing = true)
+public class FirestoreBlockRepository implements BlockRepository {
+
+    @Autowired
+    private Firestore firestore;
+
+    @Value("${migrations.deterministic-ids.dual-read:true}")
+    private boolean dualRead;
+
+    /**
+     * Document ID of the edge blocker -> blocked
+     */
+    public static String documentId(String blockerId, String blockedId) {
+        return blockerId + "_" + blockedId;
+    }
+
+    @Override
+    public boolean exists(String blockerId, String blockedId) {
+        try {
+            if (edge(blockerId, blockedId).get().get().exists()) {
+                return true;
+            }
+            return dualRead && !findLegacyEdges(blockerId, blockedId).isEmpty();
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void save(String blockerId, String blockedId) {
+        try {
+            Map<String, Object> blockData = new HashMap<>();
+            blockData.put("blockerId", blockerId);
+            blockData.put("blockedId", blockedId);
+            blockData.put("createdAt", System.currentTimeMillis());
+
+            edge(blockerId, blockedId).set(blockData).get();
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean delete(String blockerId, String blockedId) {
+        try {
+            DocumentReference edge = edge(blockerId, blockedId);
+            boolean existed = edge.get().get().exists();
+            if (existed) {
+                edge.delete().get();
+            }
+
+            if (dualRead) {
+                for (DocumentSnapshot doc : findLegacyEdges(blockerId, blockedId)) {
+                    doc.getReference().delete().get();
+                    existed = true;
+                }
+            }
+            return existed;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<String>> findBlockedIds(String blockerId) {
+        return ids(firestore.collection("blocks").whereEqualTo("blockerId", blockerId), "blockedId");
+    }
+
+    @Override
+    public CompletableFuture<List<String>> findBlockerIds(String blockedId) {
+        return ids(firestore.collection("blocks").whereEqualTo("blockedId", blockedId), "blockerId");
+    }
+
+    private DocumentReference edge(String blockerId, String blockedId) {
+        return firestore.collection("blocks").document(documentId(blockerId, blockedId));
+    }
+
+    // Copies of the edge saved under auto-generated IDs before the migration
+    private List<QueryDocumentSnapshot> findLegacyEdges(String blockerId, String blockedId) throws Exception {
+        String id = documentId(blockerId, blockedId);
+        return firestore.collection("blocks")
+                .whereEqualTo("blockerId", blockerId)
+                .whereEqualTo("blockedId", blockedId)
+                .get().get().getDocuments().stream()
+                .filter(doc -> !doc.getId().equals(id))
+                .collect(Collectors.toList());
+    }
+
+    private CompletableFuture<List<String>> ids(Query query, String field) {
+        return toCompletable(query.get())
+                .thenApply(snapshot -> snapshot.getDocuments().stream()
+                        .map(doc -> doc.getString(field))
+                        .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,267 @@
+package com.studybuddy.repository;
+
+import com.google.cloud.firestore.*;
+import com.studybuddy.dto.MessageResponse;
+import com.studybuddy.service.MessageCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.studybuddy.service.FirestoreFutures.toCompletable;
+
+/**
+ * Old chat messages packed into archive chunks (sessions/{id}/messageArchive), a few hundred per
+ * document, so reading a long history costs one read per chunk instead of one per message.
+ *
+ * A background pass moves messages older than chat.archive.min-age-hours out of the messages
+ * subcollection. Each chunk is written in the same transaction that deletes the messages it holds,
+ * so a message is always in exactly one place. Chunks list their message IDs for point lookups.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.chat.backend", havingValue = "firestore", matchIfMissing = true)
+public class FirestoreMessageArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(FirestoreMessageArchive.class);
+
+    // Messages are capped at 1000 characters, so a full chunk stays well under the 1 MiB document limit
+    static final int CHUNK_SIZE = 250;
+
+    private static final Comparator<MessageResponse> CHRONOLOGICAL =
+            Comparator.comparing(MessageResponse::getTimestamp).thenComparing(MessageResponse::getId);
+
+    @Autowired
+    private Firestore firestore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Off until rolled out (see README); reads cover archived chunks either way
+    @Value("${chat.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.archive.min-age-hours:24}")
+    private long minAgeHours;
+
+    @Value("${chat.archive.scan-limit:500}")
+    private int scanLimit;
+
+    private Counter archivedCounter;
+    private Counter chunkReadCounter;
+
+    @PostConstruct
+    public void registerMetrics() {
+        archivedCounter = meterRegistry.counter("chat.archive.messages.archived");
+        chunkReadCounter = meterRegistry.counter("chat.archive.chunks.read");
+    }
+
+    /**
+     * Nothing newer than this can be archived yet, so reads past it can skip the archive
+     */
+    long archiveHorizon() {
+        return System.currentTimeMillis() - TimeUnit.HOURS.toMillis(minAgeHours);
+    }
+
+    CompletableFuture<List<MessageResponse>> findAll(String sessionId) {
+        return chunks(archive(sessionId).orderBy("firstTimestamp"), sessionId);
+    }
+
+    CompletableFuture<List<MessageResponse>> findNewerThan(String sessionId, long since) {
+        return chunks(archive(sessionId).whereGreaterThan("lastTimestamp", since), sessionId)
+                .thenApply(messages -> messages.stream()
+                        .filter(message -> message.getTimestamp() > since)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Archived messages before the position, newest first - enough chunks to fill limit
+     */
+    CompletableFuture<List<MessageResponse>> findBefore(String sessionId, Long beforeTimestamp, String beforeId,
+                                                        int limit) {
+        Query query = archive(sessionId);
+        if (beforeTimestamp != null) {
+            query = query.whereLessThanOrEqualTo("firstTimestamp", beforeTimestamp);
+        }
+        int chunksNeeded = limit / CHUNK_SIZE + 2;
+        query = query.orderBy("firstTimestamp", Query.Direction.DESCENDING).limit(chunksNeeded);
+
+        return chunks(query, sessionId).thenApply(messages -> messages.stream()
+                .filter(message -> beforeTimestamp == null
+                        || message.getTimestamp() < beforeTimestamp
+                        || (message.getTimestamp() == beforeTimestamp.longValue()
+                            && message.getId().compareTo(beforeId) < 0))
+                .sorted(CHRONOLOGICAL.reversed())
+                .limit(limit)
+                .collect(Collectors.toList()));
+    }
+
+    CompletableFuture<MessageResponse> findById(String sessionId, String messageId) {
+        return chunks(archive(sessionId).whereArrayContains("messageIds", messageId), sessionId)
+                .thenApply(messages -> messages.stream()
+                        .filter(message -> messageId.equals(message.getId()))
+                        .findFirst()
+                        .orElse(null));
+    }
+
+    /**
+     * Take a message out of whichever chunk holds it, dropping the chunk if it ends up empty
+     */
+    CompletableFuture<Void> remove(String sessionId, String messageId) {
+        Query holder = archive(sessionId).whereArrayContains("messageIds", messageId).limit(1);
+        return toCompletable(firestore.runTransaction(transaction -> {
+            List<QueryDocumentSnapshot> chunks = transaction.get(holder).get().getDocuments();
+            if (chunks.isEmpty()) {
+                return null;
+            }
+
+            DocumentSnapshot chunk = chunks.get(0);
+            List<MessageResponse> remaining = unpack(chunk, sessionId).stream()
+                    .filter(message -> !messageId.equals(message.getId()))
+                    .collect(Collectors.toList());
+            if (remaining.isEmpty()) {
+                transaction.delete(chunk.getReference());
+            } else {
+                transaction.set(chunk.getReference(), pack(remaining));
+            }
+            return null;
+        })).thenApply(done -> null);
+    }
+
+    /**
+     * Find sessions with old live messages and roll them into chunks
+     */
+    @Scheduled(fixedDelayString = "${chat.archive.interval-ms:3600000}",
+               initialDelayString = "${chat.archive.initial-delay-ms:300000}")
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+
+        long cutoff = archiveHorizon();
+        try {
+            // Collection-group scan needs the messages.timestamp field override in firestore.indexes.json
+            List<QueryDocumentSnapshot> oldMessages = firestore.collectionGroup("messages")
+                    .whereLessThan("timestamp", cutoff)
+                    .limit(scanLimit)
+                    .get().get().getDocuments();
+
+            // Small sessions don't end up with lots of tiny chunks - each pass tops up the newest one
+            Set<String> sessionIds = oldMessages.stream()
+                    .map(doc -> doc.getReference().getParent().getParent().getId())
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+
+            for (String sessionId : sessionIds) {
+                compactSession(sessionId, cutoff);
+            }
+        } catch (Exception e) {
+            logger.warn("Chat archive pass failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Archive a session's messages older than cutoff, one chunk per transaction
+     */
+    void compactSession(String sessionId, long cutoff) throws Exception {
+        Query oldest = messages(sessionId)
+                .whereLessThan("timestamp", cutoff)
+                .orderBy("timestamp")
+                .orderBy(FieldPath.documentId())
+                .limit(CHUNK_SIZE);
+        Query latestChunk = archive(sessionId).orderBy("firstTimestamp", Query.Direction.DESCENDING).limit(1);
+
+        int moved;
+        do {
+            moved = firestore.runTransaction(transaction -> {
+                List<QueryDocumentSnapshot> live = transaction.get(oldest).get().getDocuments();
+                if (live.isEmpty()) {
+                    return 0;
+                }
+
+                // Top up the newest chunk before starting another one
+                List<QueryDocumentSnapshot> latest = transaction.get(latestChunk).get().getDocuments();
+                DocumentReference chunkRef;
+                List<MessageResponse> contents = new ArrayList<>();
+                if (!latest.isEmpty() && latest.get(0).getLong("count") < CHUNK_SIZE) {
+                    chunkRef = latest.get(0).getReference();
+                    contents.addAll(unpack(latest.get(0), sessionId));
+                } else {
+                    chunkRef = archive(sessionId).document();
+                }
+
+                int room = CHUNK_SIZE - contents.size();
+                List<QueryDocumentSnapshot> batch = live.subList(0, Math.min(room, live.size()));
+                batch.forEach(doc -> contents.add(MessageCodec.decode(doc)));
+                contents.sort(CHRONOLOGICAL);
+
+                transaction.set(chunkRef, pack(contents));
+                batch.forEach(doc -> transaction.delete(doc.getReference()));
+                return batch.size();
+            }).get();
+
+            archivedCounter.increment(moved);
+        } while (moved > 0);
+    }
+
+    private CompletableFuture<List<MessageResponse>> chunks(Query query, String sessionId) {
+        return toCompletable(query.get()).thenApply(snapshot -> {
+            chunkReadCounter.increment(snapshot.size());
+            List<MessageResponse> messages = new ArrayList<>();
+            snapshot.getDocuments().forEach(chunk -> messages.addAll(unpack(chunk, sessionId)));
+            return messages;
+        });
+    }
+
+    private static Map<String, Object> pack(List<MessageResponse> messages) {
+        List<Map<String, Object>> packed = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (MessageResponse message : messages) {
+            Map<String, Object> entry = FirestoreMessageRepository.toDocument(message);
+            // Every entry in a chunk belongs to the same session
+            entry.remove("sessionId");
+            entry.put("id", message.getId());
+            packed.add(entry);
+            ids.add(message.getId());
+        }
+
+        Map<String, Object> chunk = new HashMap<>();
+        chunk.put("firstTimestamp", messages.get(0).getTimestamp());
+        chunk.put("lastTimestamp", messages.get(messages.size() - 1).getTimestamp());
+        chunk.put("count", messages.size());
+        chunk.put("messageIds", ids);
+        chunk.put("messages", packed);
+        return chunk;
+    }
+
+    private static List<MessageResponse> unpack(DocumentSnapshot chunk, String sessionId) {
+        List<Map<String, Object>> packed = (List<Map<String, Object>>) chunk.get("messages");
+        if (packed == null) {
+            return new ArrayList<>();
+        }
+        return packed.stream()
+                .map(entry -> {
+                    MessageResponse message = MessageCodec.decode((String) entry.get("id"), entry);
+                    message.setSessionId(sessionId);
+                    return message;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private CollectionReference messages(String sessionId) {
+        return firestore.collection("sessions").document(sessionId).collection("messages");
+    }
+
+    private CollectionReference archive(String sessionId) {
+        return firestore.collection("sessions").document(sessionId).collection("messageArchive");
+    }
+}
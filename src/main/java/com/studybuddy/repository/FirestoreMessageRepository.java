@@ -0,0 +1,144 @@
+package com.studybuddy.repository;
+
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import com.studybuddy.dto.MessageResponse;
+import com.studybuddy.service.MessageCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static com.studybuddy.service.FirestoreFutures.toCompletable;
+
+/**
+ * Messages stored in a subcollection under each session document.
+ */
+@Repository
+@ConditionalOnProperty(name = "storage.chat.backend", havingValue = "firestore", matchIfMissing = true)
+public class FirestoreMessageRepository implements MessageRepository {
+
+    @Autowired
+    private Firestore firestore;
+
+    @Autowired
+    private FirestoreMessageArchive archive;
+
+    @Override
+    public CompletableFuture<MessageResponse> save(MessageResponse message) {
+        Map<String, Object> messageData = toDocument(message);
+
+        DocumentReference docRef = messages(message.getSessionId()).document();
+        return toCompletable(docRef.set(messageData))
+                .thenApply(writeResult -> MessageCodec.decode(docRef.getId(), messageData));
+    }
+
+    @Override
+    public CompletableFuture<List<MessageResponse>> findBySession(String sessionId) {
+        // Archived chunks hold the older history, the subcollection the live tail
+        CompletableFuture<List<MessageResponse>> archived = archive.findAll(sessionId);
+        CompletableFuture<List<MessageResponse>> live = query(messages(sessionId)
+                .orderBy("timestamp", Query.Direction.ASCENDING));
+        return archived.thenCombine(live, FirestoreMessageRepository::chronological);
+    }
+
+    @Override
+    public CompletableFuture<List<MessageResponse>> findBySessionSince(String sessionId, long since) {
+        CompletableFuture<List<MessageResponse>> live = query(messages(sessionId)
+                .whereGreaterThan("timestamp", since)
+                .orderBy("timestamp", Query.Direction.ASCENDING));
+        // Polls for recent messages never reach back as far as the archive
+        if (since >= archive.archiveHorizon()) {
+            return live;
+        }
+        return archive.findNewerThan(sessionId, since).thenCombine(live, FirestoreMessageRepository::chronological);
+    }
+
+    @Override
+    public CompletableFuture<List<MessageResponse>> findBefore(String sessionId, Long beforeTimestamp, String beforeId,
+                                                               int limit) {
+        Query query = messages(sessionId)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        if (beforeTimestamp != null) {
+            query = query.startAfter(beforeTimestamp, beforeId);
+        }
+
+        long horizon = archive.archiveHorizon();
+        return query(query.limit(limit)).thenCompose(live -> {
+            // A full page that stays newer than anything archivable needs nothing from the archive
+            if (live.size() == limit && live.get(live.size() - 1).getTimestamp() >= horizon) {
+                return CompletableFuture.completedFuture(live);
+            }
+            return archive.findBefore(sessionId, beforeTimestamp, beforeId, limit).thenApply(archived -> {
+                List<MessageResponse> merged = chronological(archived, live);
+                Collections.reverse(merged);
+                return merged.subList(0, Math.min(limit, merged.size()));
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<MessageResponse> findById(String sessionId, String messageId) {
+        return toCompletable(messages(sessionId).document(messageId).get())
+                .thenCompose(doc -> doc.exists()
+                        ? CompletableFuture.completedFuture(MessageCodec.decode(doc))
+                        : archive.findById(sessionId, messageId));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String sessionId, String messageId) {
+        // The message is either live or archived; removing it from both covers a compaction in between
+        return toCompletable(messages(sessionId).document(messageId).delete())
+                .thenCompose(writeResult -> archive.remove(sessionId, messageId));
+    }
+
+    /**
+     * Archived and live messages merged into one ordered list (by timestamp, then ID)
+     */
+    private static List<MessageResponse> chronological(List<MessageResponse> archived, List<MessageResponse> live) {
+        List<MessageResponse> merged = new ArrayList<>(archived);
+        merged.addAll(live);
+        merged.sort(Comparator.comparing(MessageResponse::getTimestamp).thenComparing(MessageResponse::getId));
+        return merged;
+    }
+
+    static Map<String, Object> toDocument(MessageResponse message) {
+        Map<String, Object> messageData = new HashMap<>();
+        messageData.put("sessionId", message.getSessionId());
+        messageData.put("senderId", message.getSenderId());
+        messageData.put("senderName", message.getSenderName());
+        messageData.put("content", message.getContent());
+        messageData.put("timestamp", message.getTimestamp());
+        return messageData;
+    }
+
+    WriteBatch batch() {
+        return firestore.batch();
+    }
+
+    CollectionReference messages(String sessionId) {
+        return firestore.collection("sessions").document(sessionId).collection("messages");
+    }
+
+    private CompletableFuture<List<MessageResponse>> query(Query query) {
+        return toCompletable(query.get())
+                .thenApply(QuerySnapshot::getDocuments)
+                .thenApply(documents -> documents.stream()
+                        .map(MessageCodec::decode)
+                        .collect(Collectors.toList()));
+    }
+}
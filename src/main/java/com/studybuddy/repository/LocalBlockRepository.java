@@ -0,0 +1,69 @@
+package com.studybuddy.repository;
+
+import org.h2.mvstore.MVMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Block edges in the embedded store, indexed in both directions.
+ */
+@Repository
+@ConditionalOnProperty(name = "storage.chat.backend", havingValue = "local")
+public class LocalBlockRepository implements BlockRepository {
+
+    private final LocalStore store;
+    // blockerId + blockedId -> createdAt
+    private final MVMap<String, Long> blocks;
+    // blockedId + blockerId -> createdAt
+    private final MVMap<String, Long> blockedBy;
+
+    @Autowired
+    public LocalBlockRepository(LocalStore store) {
+        this.store = store;
+        this.blocks = store.map("blocks");
+        this.blockedBy = store.map("blockedBy");
+    }
+
+    @Override
+    public boolean exists(String blockerId, String blockedId) {
+        return blocks.containsKey(LocalStore.key(blockerId, blockedId));
+    }
+
+    @Override
+    public void save(String blockerId, String blockedId) {
+        long createdAt = System.currentTimeMillis();
+        blocks.put(LocalStore.key(blockerId, blockedId), createdAt);
+        blockedBy.put(LocalStore.key(blockedId, blockerId), createdAt);
+        store.commit();
+    }
+
+    @Override
+    public boolean delete(String blockerId, String blockedId) {
+        boolean removed = blocks.remove(LocalStore.key(blockerId, blockedId)) != null;
+        blockedBy.remove(LocalStore.key(blockedId, blockerId));
+        store.commit();
+        return removed;
+    }
+
+    @Override
+    public CompletableFuture<List<String>> findBlockedIds(String blockerId) {
+        return CompletableFuture.completedFuture(otherSide(blocks, blockerId));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> findBlockerIds(String blockedId) {
+        return CompletableFuture.completedFuture(otherSide(blockedBy, blockedId));
+    }
+
+    private List<String> otherSide(MVMap<String, Long> index, String userId) {
+        String prefix = userId + LocalStore.SEPARATOR;
+        return LocalStore.keysWithPrefix(index, prefix, prefix).stream()
+                .map(key -> key.substring(prefix.length()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,117 @@
+package com.studybuddy.repository;
+
+import com.studybuddy.dto.MessageResponse;
+import org.h2.mvstore.MVMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Messages in the embedded store, keyed by session, zero-padded timestamp and ID
+ * so a session's history is one ordered range.
+ */
+@Repository
+@ConditionalOnProperty(name = "storage.chat.backend", havingValue = "local")
+public class LocalMessageRepository implements MessageRepository {
+
+    private final LocalStore store;
+    private final MVMap<String, String[]> messages;
+    private final MVMap<String, String> messageKeys;
+
+    @Autowired
+    public LocalMessageRepository(LocalStore store) {
+        this.store = store;
+        this.messages = store.map("messages");
+        this.messageKeys = store.map("messageKeys");
+    }
+
+    @Override
+    public CompletableFuture<MessageResponse> save(MessageResponse message) {
+        String id = LocalStore.newId();
+        String key = messageKey(message.getSessionId(), message.getTimestamp(), id);
+
+        messages.put(key, new String[]{message.getSenderId(), message.getSenderName(), message.getContent()});
+        messageKeys.put(LocalStore.key(message.getSessionId(), id), key);
+        store.commit();
+
+        message.setId(id);
+        return CompletableFuture.completedFuture(message);
+    }
+
+    @Override
+    public CompletableFuture<List<MessageResponse>> findBySession(String sessionId) {
+        return CompletableFuture.completedFuture(scan(sessionId, sessionPrefix(sessionId)));
+    }
+
+    @Override
+    public CompletableFuture<List<MessageResponse>> findBySessionSince(String sessionId, long since) {
+        return CompletableFuture.completedFuture(scan(sessionId, sessionPrefix(sessionId) + pad(since + 1)));
+    }
+
+    @Override
+    public CompletableFuture<List<MessageResponse>> findBefore(String sessionId, Long beforeTimestamp, String beforeId,
+                                                               int limit) {
+        String prefix = sessionPrefix(sessionId);
+        // Keys already sort by timestamp then ID, so walk backwards from the cursor
+        String key = beforeTimestamp != null
+                ? messageKey(sessionId, beforeTimestamp, beforeId)
+                : prefix + Character.MAX_VALUE;
+
+        List<MessageResponse> page = new ArrayList<>();
+        while (page.size() < limit && (key = messages.lowerKey(key)) != null && key.startsWith(prefix)) {
+            page.add(decode(sessionId, key, messages.get(key)));
+        }
+        return CompletableFuture.completedFuture(page);
+    }
+
+    @Override
+    public CompletableFuture<MessageResponse> findById(String sessionId, String messageId) {
+        String key = messageKeys.get(LocalStore.key(sessionId, messageId));
+        return CompletableFuture.completedFuture(key != null ? decode(sessionId, key, messages.get(key)) : null);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String sessionId, String messageId) {
+        String key = messageKeys.remove(LocalStore.key(sessionId, messageId));
+        if (key != null) {
+            messages.remove(key);
+            store.commit();
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private List<MessageResponse> scan(String sessionId, String from) {
+        return LocalStore.keysWithPrefix(messages, sessionPrefix(sessionId), from).stream()
+                .map(key -> decode(sessionId, key, messages.get(key)))
+                .collect(Collectors.toList());
+    }
+
+    private MessageResponse decode(String sessionId, String key, String[] value) {
+        String[] keyParts = key.split(String.valueOf(LocalStore.SEPARATOR));
+        MessageResponse message = new MessageResponse();
+        message.setId(keyParts[2]);
+        message.setSessionId(sessionId);
+        message.setTimestamp(Long.parseLong(keyParts[1]));
+        message.setSenderId(value[0]);
+        message.setSenderName(value[1]);
+        message.setContent(value[2]);
+        return message;
+    }
+
+    private static String sessionPrefix(String sessionId) {
+        return sessionId + LocalStore.SEPARATOR;
+    }
+
+    private static String messageKey(String sessionId, long timestamp, String id) {
+        return LocalStore.key(sessionId, pad(timestamp), id);
+    }
+
+    private static String pad(long timestamp) {
+        return String.format("%019d", timestamp);
+    }
+}
@@ -0,0 +1,75 @@
+package com.studybuddy.repository;
+
+import jakarta.annotation.PreDestroy;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Embedded MVStore file backing the local chat storage backend (messages and blocks). Keys are
+ * composite strings so per-session and per-user lookups are ordered prefix scans over a single sorted map.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.chat.backend", havingValue = "local")
+public class LocalStore {
+
+    static final char SEPARATOR = '\u0001';
+
+    private final MVStore store;
+
+    public LocalStore(@Value("${storage.chat.local-path:data/studybuddy.mv}") String path) {
+        File parent = new File(path).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        this.store = new MVStore.Builder().fileName(path).compress().open();
+    }
+
+    <K, V> MVMap<K, V> map(String name) {
+        return store.openMap(name);
+    }
+
+    /**
+     * Persist pending changes so an acknowledged write survives a crash
+     */
+    void commit() {
+        store.commit();
+    }
+
+    /**
+     * Keys in the map that start with the prefix, beginning at (and including) from
+     */
+    static <V> List<String> keysWithPrefix(MVMap<String, V> map, String prefix, String from) {
+        List<String> keys = new ArrayList<>();
+        Iterator<String> it = map.keyIterator(from);
+        while (it.hasNext()) {
+            String key = it.next();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    static String key(String... parts) {
+        return String.join(String.valueOf(SEPARATOR), parts);
+    }
+
+    static String newId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+    }
+
+    @PreDestroy
+    public void close() {
+        store.close();
+    }
+}
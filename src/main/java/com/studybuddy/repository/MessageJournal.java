@@ -0,0 +1,209 @@
+package com.studybuddy.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.studybuddy.dto.MessageResponse;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only file of pending message writes, one JSON record per line. Writers append with write()
+ * and then wait in sync() until their record is on disk; whoever forces the file first covers every
+ * record written before it, so concurrent writers share one fsync (group commit). A "flushed" marker
+ * records how far Firestore has caught up. The file is truncated whenever nothing is left pending,
+ * and rewritten with just the pending records once the flushed part has grown too large.
+ */
+class MessageJournal {
+
+    static final String SAVE = "save";
+    static final String DELETE = "delete";
+    static final String FLUSHED = "flushed";
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final Object forceLock = new Object();
+
+    // Swapped by rewrite() while holding both this and forceLock
+    private volatile FileChannel channel;
+    // Records written since startup; guarded by this for writes
+    private volatile long written;
+    // Records known to be on disk; guarded by forceLock
+    private long forced;
+    // Guarded by this: bytes in the file, and what was left after the last rewrite
+    private long size;
+    private long rewrittenSize;
+
+    MessageJournal(String path, ObjectMapper objectMapper) throws IOException {
+        this.path = Path.of(path);
+        this.objectMapper = objectMapper;
+        File parent = this.path.toAbsolutePath().toFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        this.channel = open(this.path);
+        this.size = channel.size();
+        this.rewrittenSize = size;
+    }
+
+    /**
+     * Records written since the last flushed marker - what still has to reach Firestore after a restart
+     */
+    synchronized List<Record> unflushed() throws IOException {
+        List<Record> records = new ArrayList<>();
+        long flushedSeq = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Record record;
+                try {
+                    record = objectMapper.readValue(line, Record.class);
+                } catch (IOException e) {
+                    // A torn last line from a crash mid-append was never acknowledged
+                    break;
+                }
+                if (FLUSHED.equals(record.getOp())) {
+                    flushedSeq = Math.max(flushedSeq, record.getSeq());
+                } else {
+                    records.add(record);
+                }
+            }
+        }
+
+        long caughtUp = flushedSeq;
+        records.removeIf(record -> record.getSeq() <= caughtUp);
+        return records;
+    }
+
+    /**
+     * Append a record without forcing it to disk; returns the ticket to pass to sync()
+     */
+    synchronized long write(Record record) throws IOException {
+        size += writeLine(channel, record);
+        return ++written;
+    }
+
+    /**
+     * Wait until the record with the given ticket is on disk. Records written while another
+     * writer's force was running are all covered by the next one.
+     */
+    void sync(long ticket) throws IOException {
+        synchronized (forceLock) {
+            if (forced >= ticket) {
+                return;
+            }
+            long upTo = written;
+            channel.force(false);
+            forced = upTo;
+        }
+    }
+
+    /**
+     * Not forced - if the marker is lost, the flushed records are just written to Firestore again
+     */
+    synchronized void markFlushed(long seq) throws IOException {
+        write(new Record(seq, FLUSHED, null, null, null));
+    }
+
+    /**
+     * Whether the file has grown past maxBytes and to twice what the last rewrite left, so a
+     * backlog bigger than maxBytes isn't rewritten on every flush
+     */
+    synchronized boolean needsRewrite(long maxBytes) {
+        return size > maxBytes && size > 2 * rewrittenSize;
+    }
+
+    /**
+     * Replace the file with just the given records - everything still pending - so a journal that
+     * never drains completely doesn't grow without bound. The new file is complete on disk before
+     * it is renamed over the old one, so a crash leaves one or the other.
+     */
+    synchronized void rewrite(List<Record> pending) throws IOException {
+        synchronized (forceLock) {
+            Path compacted = path.resolveSibling(path.getFileName() + ".rewrite");
+            long newSize = 0;
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Record record : pending) {
+                    newSize += writeLine(out, record);
+                }
+                out.force(false);
+            }
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+            channel = open(path);
+            size = newSize;
+            rewrittenSize = newSize;
+            // Everything written so far is either in the new file or already in Firestore
+            forced = written;
+        }
+    }
+
+    /**
+     * Start the file over once everything in it has been flushed
+     */
+    synchronized void truncate() throws IOException {
+        synchronized (forceLock) {
+            channel.truncate(0);
+            channel.force(false);
+            size = 0;
+            rewrittenSize = 0;
+            forced = written;
+        }
+    }
+
+    synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private int writeLine(FileChannel target, Record record) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return line.length;
+    }
+
+    // Make the rename itself durable; not every platform can open a directory, which is fine
+    private void forceDirectory() {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Record {
+        private long seq;
+        private String op;
+        private MessageResponse message;
+        private String sessionId;
+        private String messageId;
+    }
+}
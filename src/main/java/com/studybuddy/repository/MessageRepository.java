@@ -0,0 +1,35 @@
+package com.studybuddy.repository;
+
+import com.studybuddy.dto.MessageResponse;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage for chat messages, kept per session and ordered by timestamp.
+ */
+public interface MessageRepository {
+
+    /**
+     * Store a new message and return it with its generated ID
+     */
+    CompletableFuture<MessageResponse> save(MessageResponse message);
+
+    CompletableFuture<List<MessageResponse>> findBySession(String sessionId);
+
+    CompletableFuture<List<MessageResponse>> findBySessionSince(String sessionId, long since);
+
+    /**
+     * Up to limit messages older than the given (timestamp, ID) position, newest first.
+     * Messages with equal timestamps are ordered by ID. A null timestamp starts from the newest message.
+     */
+    CompletableFuture<List<MessageResponse>> findBefore(String sessionId, Long beforeTimestamp, String beforeId,
+                                                        int limit);
+
+    /**
+     * A single message, or null if it doesn't exist
+     */
+    CompletableFuture<MessageResponse> findById(String sessionId, String messageId);
+
+    CompletableFuture<Void> delete(String sessionId, String messageId);
+}
@@ -0,0 +1,423 @@
+package com.studybuddy.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.WriteBatch;
+import com.studybuddy.dto.MessageResponse;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind front for the Firestore message store. Saves and deletes are acknowledged once they
+ * are in the local journal, then written to Firestore in batches every flush interval (or sooner
+ * when a full batch is waiting). Reads merge the pending writes over what Firestore returns, so
+ * callers see their own messages straight away. Anything still in the journal at startup is replayed.
+ *
+ * A batch Firestore rejects outright (an invalid or oversized document, say) is retried one record at
+ * a time, and a record rejected max-attempts times on its own is moved to the dead-letter file so it
+ * can't hold up the queue. Transient failures such as UNAVAILABLE are retried until Firestore is back.
+ */
+@Repository
+@Primary
+@ConditionalOnExpression("${chat.write-behind.enabled:false} and '${storage.chat.backend:firestore}' == 'firestore'")
+public class WriteBehindMessageRepository implements MessageRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindMessageRepository.class);
+
+    // Firestore rejects batches of more than 500 writes
+    private static final int MAX_BATCH_SIZE = 500;
+
+    @Autowired
+    private FirestoreMessageRepository firestoreRepository;
+
+    @Autowired
+    private FirestoreMessageArchive archive;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.write-behind.journal-path:data/chat-journal.log}")
+    private String journalPath;
+
+    @Value("${chat.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${chat.write-behind.batch-size:100}")
+    private int batchSize;
+
+    @Value("${chat.write-behind.journal-max-bytes:8388608}")
+    private long journalMaxBytes;
+
+    @Value("${chat.write-behind.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${chat.write-behind.dead-letter-path:data/chat-journal.dead}")
+    private String deadLetterPath;
+
+    private MessageJournal journal;
+    private ScheduledExecutorService flusher;
+
+    // Guarded by this: writes waiting for Firestore, oldest first, plus lookups for reads
+    private final ArrayDeque<MessageJournal.Record> queue = new ArrayDeque<>();
+    private final Map<String, MessageResponse> pendingSaves = new HashMap<>();
+    private final Set<String> pendingDeletes = new HashSet<>();
+    // Queued records per message, so pending state is dropped once the last one is flushed
+    private final Map<String, Integer> pendingCounts = new HashMap<>();
+    private long nextSeq = 1;
+
+    // Flusher thread only: records left to flush one at a time after a rejected batch, and how
+    // often the record at the head has been rejected on its own
+    private int isolating;
+    private int headRejections;
+
+    private Timer flushTimer;
+    private Counter flushedCounter;
+    private Counter flushFailureCounter;
+    private Counter deadLetterCounter;
+
+    @PostConstruct
+    public void start() throws IOException {
+        flushTimer = meterRegistry.timer("chat.writebehind.flush.latency");
+        flushedCounter = meterRegistry.counter("chat.writebehind.flushed");
+        flushFailureCounter = meterRegistry.counter("chat.writebehind.flush.failures");
+        deadLetterCounter = meterRegistry.counter("chat.writebehind.dead.lettered");
+        Gauge.builder("chat.writebehind.queue.depth", this, WriteBehindMessageRepository::queueDepth)
+                .register(meterRegistry);
+
+        journal = new MessageJournal(journalPath, objectMapper);
+        List<MessageJournal.Record> recovered = journal.unflushed();
+        synchronized (this) {
+            for (MessageJournal.Record record : recovered) {
+                track(record);
+                nextSeq = Math.max(nextSeq, record.getSeq() + 1);
+            }
+        }
+        if (!recovered.isEmpty()) {
+            logger.info("Replaying {} unflushed chat writes from {}", recovered.size(), journalPath);
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Last attempt on the way out; whatever fails stays in the journal for the next start
+        boolean flushed = true;
+        while (flushed && queueDepth() > 0) {
+            flushed = flush();
+        }
+        journal.close();
+    }
+
+    @Override
+    public CompletableFuture<MessageResponse> save(MessageResponse message) {
+        // Firestore auto-IDs are generated client-side, so the ID is known before the write happens
+        message.setId(firestoreRepository.messages(message.getSessionId()).document().getId());
+        return enqueue(MessageJournal.SAVE, message, message.getSessionId(), message.getId())
+                .thenApply(queued -> message);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String sessionId, String messageId) {
+        return enqueue(MessageJournal.DELETE, null, sessionId, messageId);
+    }
+
+    @Override
+    public CompletableFuture<List<MessageResponse>> findBySession(String sessionId) {
+        return firestoreRepository.findBySession(sessionId)
+                .thenApply(stored -> merge(stored, sessionId, message -> true));
+    }
+
+    @Override
+    public CompletableFuture<List<MessageResponse>> findBySessionSince(String sessionId, long since) {
+        return firestoreRepository.findBySessionSince(sessionId, since)
+                .thenApply(stored -> merge(stored, sessionId, message -> message.getTimestamp() > since));
+    }
+
+    @Override
+    public CompletableFuture<List<MessageResponse>> findBefore(String sessionId, Long beforeTimestamp, String beforeId,
+                                                               int limit) {
+        // Over-fetch by the pending deletes so removing them can't leave the page short
+        return firestoreRepository.findBefore(sessionId, beforeTimestamp, beforeId,
+                        limit + pendingDeleteCount(sessionId))
+                .thenApply(stored -> {
+                    List<MessageResponse> merged = merge(stored, sessionId, message -> beforeTimestamp == null
+                            || message.getTimestamp() < beforeTimestamp
+                            || (message.getTimestamp() == beforeTimestamp.longValue()
+                                && message.getId().compareTo(beforeId) < 0));
+                    Collections.reverse(merged);
+                    return merged.subList(0, Math.min(limit, merged.size()));
+                });
+    }
+
+    @Override
+    public CompletableFuture<MessageResponse> findById(String sessionId, String messageId) {
+        synchronized (this) {
+            if (pendingDeletes.contains(pendingKey(sessionId, messageId))) {
+                return CompletableFuture.completedFuture(null);
+            }
+            MessageResponse pending = pendingSaves.get(pendingKey(sessionId, messageId));
+            if (pending != null) {
+                return CompletableFuture.completedFuture(pending);
+            }
+        }
+        return firestoreRepository.findById(sessionId, messageId);
+    }
+
+    private CompletableFuture<Void> enqueue(String op, MessageResponse message, String sessionId, String messageId) {
+        boolean fullBatch;
+        try {
+            long ticket;
+            synchronized (this) {
+                MessageJournal.Record record = new MessageJournal.Record(nextSeq++, op, message, sessionId, messageId);
+                ticket = journal.write(record);
+                track(record);
+                fullBatch = queue.size() >= batchSize;
+            }
+            // The fsync happens outside the lock readers share, and senders waiting together share one.
+            // Should it fail, the write is still queued for Firestore even though the sender sees an error.
+            journal.sync(ticket);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("Could not journal message: " + e.getMessage()));
+        }
+
+        if (fullBatch) {
+            flusher.execute(this::flush);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void track(MessageJournal.Record record) {
+        queue.addLast(record);
+        String key = pendingKey(record.getSessionId(), record.getMessageId());
+        pendingCounts.merge(key, 1, Integer::sum);
+        if (MessageJournal.SAVE.equals(record.getOp())) {
+            pendingSaves.put(key, record.getMessage());
+        } else {
+            pendingSaves.remove(key);
+            pendingDeletes.add(key);
+        }
+    }
+
+    /**
+     * Write the oldest pending records to Firestore in one batch.
+     * Returns false if the batch failed; it stays queued and is retried on the next tick.
+     */
+    boolean flush() {
+        List<MessageJournal.Record> batch = nextBatch(isolating > 0 ? 1 : MAX_BATCH_SIZE);
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            WriteBatch writeBatch = firestoreRepository.batch();
+            for (MessageJournal.Record record : batch) {
+                DocumentReference docRef = firestoreRepository.messages(record.getSessionId())
+                        .document(record.getMessageId());
+                if (MessageJournal.SAVE.equals(record.getOp())) {
+                    writeBatch.set(docRef, FirestoreMessageRepository.toDocument(record.getMessage()));
+                } else {
+                    writeBatch.delete(docRef);
+                }
+            }
+            writeBatch.commit().get();
+        } catch (Exception e) {
+            flushFailureCounter.increment();
+            if (!rejected(e)) {
+                logger.warn("Flushing {} chat writes failed, will retry: {}", batch.size(), e.getMessage());
+                return false;
+            }
+            if (batch.size() > 1) {
+                // One bad record sinks the whole batch - find it by retrying one record at a time
+                logger.warn("Firestore rejected {} chat writes, retrying them one by one: {}", batch.size(),
+                        e.getMessage());
+                isolating = batch.size();
+                return false;
+            }
+            if (++headRejections < maxAttempts) {
+                logger.warn("Firestore rejected chat write {} (attempt {} of {}): {}", batch.get(0).getSeq(),
+                        headRejections, maxAttempts, e.getMessage());
+                return false;
+            }
+            return deadLetter(batch.get(0), e);
+        } finally {
+            sample.stop(flushTimer);
+        }
+
+        // A delete may target a message that has been compacted into the archive since it was sent
+        batch.stream()
+                .filter(record -> MessageJournal.DELETE.equals(record.getOp()))
+                .forEach(record -> archive.remove(record.getSessionId(), record.getMessageId())
+                        .exceptionally(e -> {
+                            logger.warn("Could not remove archived message {}: {}", record.getMessageId(),
+                                    e.getMessage());
+                            return null;
+                        }));
+
+        finish(batch);
+        flushedCounter.increment(batch.size());
+        return true;
+    }
+
+    /**
+     * Move a record Firestore keeps rejecting out of the queue and into the dead-letter file,
+     * one journal-format line per record so it can be inspected and replayed by hand
+     */
+    private boolean deadLetter(MessageJournal.Record record, Exception e) {
+        try {
+            Files.writeString(Path.of(deadLetterPath), objectMapper.writeValueAsString(record) + "\n",
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException io) {
+            logger.error("Could not dead-letter chat write {}, keeping it queued: {}", record.getSeq(),
+                    io.getMessage());
+            return false;
+        }
+        logger.error("Firestore rejected chat write {} ({} of message {}) {} times, moved it to {}: {}",
+                record.getSeq(), record.getOp(), record.getMessageId(), maxAttempts, deadLetterPath, e.getMessage());
+        deadLetterCounter.increment();
+        finish(List.of(record));
+        return true;
+    }
+
+    private void finish(List<MessageJournal.Record> batch) {
+        headRejections = 0;
+        isolating = Math.max(0, isolating - batch.size());
+        try {
+            completed(batch);
+        } catch (IOException e) {
+            // Firestore has the writes; replaying them after a restart is harmless
+            logger.warn("Could not record chat flush in journal: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Whether Firestore refused the writes themselves, as opposed to failing to take them right now
+     */
+    private static boolean rejected(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            // Thrown building the batch, before anything was sent
+            if (cause instanceof IllegalArgumentException) {
+                return true;
+            }
+        }
+        Status.Code code = Status.fromThrowable(e).getCode();
+        return code == Status.Code.INVALID_ARGUMENT
+                || code == Status.Code.FAILED_PRECONDITION
+                || code == Status.Code.OUT_OF_RANGE
+                || code == Status.Code.NOT_FOUND
+                || code == Status.Code.ALREADY_EXISTS;
+    }
+
+    /**
+     * The oldest records that can go in one batch - a document written twice ends the batch early,
+     * so a save and a later delete of the same message are never applied out of order
+     */
+    private synchronized List<MessageJournal.Record> nextBatch(int maxSize) {
+        List<MessageJournal.Record> batch = new ArrayList<>();
+        Set<String> touched = new HashSet<>();
+        for (MessageJournal.Record record : queue) {
+            if (batch.size() >= maxSize
+                    || !touched.add(pendingKey(record.getSessionId(), record.getMessageId()))) {
+                break;
+            }
+            batch.add(record);
+        }
+        return batch;
+    }
+
+    private synchronized void completed(List<MessageJournal.Record> batch) throws IOException {
+        for (MessageJournal.Record record : batch) {
+            queue.removeFirst();
+            String key = pendingKey(record.getSessionId(), record.getMessageId());
+            // A newer write to the same message may still be waiting
+            if (pendingCounts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null) == null) {
+                pendingSaves.remove(key);
+                pendingDeletes.remove(key);
+            }
+        }
+
+        if (queue.isEmpty()) {
+            journal.truncate();
+        } else {
+            journal.markFlushed(batch.get(batch.size() - 1).getSeq());
+            // Under steady traffic the queue may never drain, so drop the flushed part now and then
+            if (journal.needsRewrite(journalMaxBytes)) {
+                journal.rewrite(new ArrayList<>(queue));
+            }
+        }
+    }
+
+    /**
+     * Stored messages with pending saves added and pending deletes removed, oldest first
+     */
+    private synchronized List<MessageResponse> merge(List<MessageResponse> stored, String sessionId,
+                                                     Predicate<MessageResponse> inRange) {
+        String prefix = pendingKey(sessionId, "");
+        Map<String, MessageResponse> byId = new LinkedHashMap<>();
+        stored.forEach(message -> byId.put(message.getId(), message));
+        pendingSaves.forEach((key, message) -> {
+            if (key.startsWith(prefix) && inRange.test(message)) {
+                byId.put(message.getId(), message);
+            }
+        });
+        pendingDeletes.forEach(key -> {
+            if (key.startsWith(prefix)) {
+                byId.remove(key.substring(prefix.length()));
+            }
+        });
+
+        return byId.values().stream()
+                .sorted(Comparator.comparing(MessageResponse::getTimestamp).thenComparing(MessageResponse::getId))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private synchronized int pendingDeleteCount(String sessionId) {
+        String prefix = pendingKey(sessionId, "");
+        return (int) pendingDeletes.stream().filter(key -> key.startsWith(prefix)).count();
+    }
+
+    private synchronized int queueDepth() {
+        return queue.size();
+    }
+
+    private static String pendingKey(String sessionId, String messageId) {
+        return sessionId + "/" + messageId;
+    }
+}
@@ -7,6 +7,7 @@ import com.google.firebase.auth.UserRecord;
 import com.studybuddy.dto.AuthRequest;
 import com.studybuddy.dto.AuthResponse;
 import com.studybuddy.dto.SignupRequest;
+import com.studybuddy.dto.UserResponse;
 import com.studybuddy.exception.BadRequestException;
 import com.studybuddy.exception.ResourceNotFoundException;
 import com.studybuddy.exception.UnauthorizedException;
@@ -28,6 +29,9 @@ public class AuthService {
     @Autowired
     private Firestore firestore;
 
+    @Autowired
+    private UserProfileCache userProfileCache;
+
     // Create user profile in Firestore (user already exists in Firebase Auth)
     public AuthResponse createUserProfile(String uid, SignupRequest request) {
         try {
@@ -41,6 +45,7 @@ public class AuthService {
             userData.put("updatedAt", LocalDateTime.now().toString());
 
             firestore.collection("users").document(uid).set(userData).get();
+            userProfileCache.invalidate(uid);
 
             return AuthResponse.builder()
                     .userId(uid)
@@ -73,6 +78,7 @@ public class AuthService {
             userData.put("updatedAt", LocalDateTime.now().toString());
 
             firestore.collection("users").document(userRecord.getUid()).set(userData).get();
+            userProfileCache.invalidate(userRecord.getUid());
 
             // Generate custom token for the user
             String customToken = firebaseAuth.createCustomToken(userRecord.getUid());
@@ -96,13 +102,9 @@ public class AuthService {
             UserRecord userRecord = firebaseAuth.getUserByEmail(request.getEmail());
 
             // Fetch user data from Firestore
-            Map<String, Object> userData = firestore.collection("users")
-                    .document(userRecord.getUid())
-                    .get()
-                    .get()
-                    .getData();
+            UserResponse profile = userProfileCache.get(userRecord.getUid()).get();
 
-            if (userData == null) {
+            if (profile == null) {
                 throw new UnauthorizedException("User data not found");
             }
 
@@ -112,7 +114,7 @@ public class AuthService {
             return AuthResponse.builder()
                     .token(customToken)
                     .userId(userRecord.getUid())
-                    .name((String) userData.get("name"))
+                    .name(profile.getName())
                     .email(userRecord.getEmail())
                     .build();
         } catch (FirebaseAuthException e) {
@@ -0,0 +1,374 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.studybuddy.repository.FirestoreBlockRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Every block edge held in memory, loaded from the blocks collection and kept current by a snapshot
+ * listener. User IDs are interned to ints and each user keeps sorted int arrays of who they block and
+ * who blocks them, so block checks are a binary search rather than a query.
+ * Edges changed through this instance are applied immediately; the listener brings in everyone else's.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.chat.backend", havingValue = "firestore", matchIfMissing = true)
+public class BlockGraphIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockGraphIndex.class);
+
+    private static final int[] NONE = new int[0];
+
+    @Autowired
+    private Firestore firestore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${blocks.index.enabled:true}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Graph graph = new Graph();
+    private volatile boolean live;
+    private ListenerRegistration registration;
+    private boolean awaitingFirstSnapshot;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("blocks.index.edges", this, index -> index.read(() -> index.graph.edges))
+                .register(meterRegistry);
+        Gauge.builder("blocks.index.users", this, index -> index.read(() -> index.graph.uids.size()))
+                .register(meterRegistry);
+        Gauge.builder("blocks.index.live", this, index -> index.live ? 1 : 0)
+                .register(meterRegistry);
+
+        if (enabled) {
+            subscribe();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        live = false;
+    }
+
+    /**
+     * Re-attach the listener if it was dropped after an error
+     */
+    @Scheduled(fixedDelayString = "${blocks.index.resubscribe-interval-ms:30000}")
+    public synchronized void ensureSubscribed() {
+        if (enabled && registration == null) {
+            logger.info("Re-subscribing block graph listener...");
+            subscribe();
+        }
+    }
+
+    /**
+     * True once the full edge set has loaded and the listener is attached
+     */
+    public boolean isLive() {
+        return live;
+    }
+
+    public boolean hasBlocked(String blockerId, String blockedId) {
+        return read(() -> graph.has(blockerId, blockedId));
+    }
+
+    public boolean isBlocked(String userId1, String userId2) {
+        return read(() -> graph.has(userId1, userId2) || graph.has(userId2, userId1));
+    }
+
+    public List<String> getBlocked(String userId) {
+        return read(() -> graph.names(graph.outgoing, userId));
+    }
+
+    public List<String> getBlockers(String userId) {
+        return read(() -> graph.names(graph.incoming, userId));
+    }
+
+    public Set<String> getAllRelations(String userId) {
+        return read(() -> {
+            Set<String> relations = new HashSet<>(graph.names(graph.outgoing, userId));
+            relations.addAll(graph.names(graph.incoming, userId));
+            return relations;
+        });
+    }
+
+    /**
+     * Apply a block saved through this instance - it is stored under its {from}_{to} document
+     */
+    public void add(String blockerId, String blockedId) {
+        write(() -> graph.addDocument(FirestoreBlockRepository.documentId(blockerId, blockedId), blockerId, blockedId));
+    }
+
+    /**
+     * Apply an unblock made through this instance - every document for the pair is deleted
+     */
+    public void remove(String blockerId, String blockedId) {
+        write(() -> graph.removePair(blockerId, blockedId));
+    }
+
+    private synchronized void subscribe() {
+        awaitingFirstSnapshot = true;
+        registration = firestore.collection("blocks").addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                logger.warn("Block graph listener failed, falling back to queries: {}", error.getMessage());
+                onListenerError();
+                return;
+            }
+            apply(snapshot);
+        });
+    }
+
+    private synchronized void onListenerError() {
+        live = false;
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    private synchronized void apply(QuerySnapshot snapshot) {
+        if (awaitingFirstSnapshot) {
+            // A fresh subscription delivers every edge - rebuild rather than patch
+            Graph rebuilt = new Graph();
+            snapshot.getDocuments().forEach(doc ->
+                    rebuilt.addDocument(doc.getId(), doc.getString("blockerId"), doc.getString("blockedId")));
+            write(() -> graph = rebuilt);
+            awaitingFirstSnapshot = false;
+            live = true;
+            logger.info("Block graph loaded with {} edges", rebuilt.edges);
+            return;
+        }
+
+        // Changes are per document - an edge only goes once no document holds it
+        // (e.g. the migration deleting a legacy duplicate of a {from}_{to} block)
+        write(() -> {
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                DocumentSnapshot doc = change.getDocument();
+                if (change.getType() == DocumentChange.Type.ADDED) {
+                    graph.addDocument(doc.getId(), doc.getString("blockerId"), doc.getString("blockedId"));
+                } else if (change.getType() == DocumentChange.Type.REMOVED) {
+                    graph.removeDocument(doc.getId(), doc.getString("blockerId"), doc.getString("blockedId"));
+                }
+            }
+        });
+    }
+
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable update) {
+        lock.writeLock().lock();
+        try {
+            update.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Interned adjacency lists. Not thread-safe on its own - guarded by the index's lock.
+     */
+    private static class Graph {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> uids = new ArrayList<>();
+        private int[][] outgoing = new int[16][];
+        private int[][] incoming = new int[16][];
+        private int edges;
+        // Documents backing each edge, for the few edges not backed by exactly their {from}_{to}
+        // document (legacy IDs, or a legacy duplicate awaiting migration); keyed by pairKey
+        private final Map<Long, Set<String>> irregular = new HashMap<>();
+
+        void addDocument(String documentId, String blockerId, String blockedId) {
+            if (blockerId == null || blockedId == null) {
+                return;
+            }
+            int from = intern(blockerId);
+            int to = intern(blockedId);
+            long key = pairKey(from, to);
+            Set<String> backing = irregular.get(key);
+            if (backing != null) {
+                backing.add(documentId);
+                return;
+            }
+            String canonical = FirestoreBlockRepository.documentId(blockerId, blockedId);
+            if (hasEdge(from, to)) {
+                // Already backed by its canonical document
+                if (!documentId.equals(canonical)) {
+                    irregular.put(key, new HashSet<>(List.of(canonical, documentId)));
+                }
+                return;
+            }
+            if (!documentId.equals(canonical)) {
+                irregular.put(key, new HashSet<>(List.of(documentId)));
+            }
+            add(from, to);
+        }
+
+        void removeDocument(String documentId, String blockerId, String blockedId) {
+            Integer from = blockerId != null ? ids.get(blockerId) : null;
+            Integer to = blockedId != null ? ids.get(blockedId) : null;
+            if (from == null || to == null) {
+                return;
+            }
+            long key = pairKey(from, to);
+            Set<String> backing = irregular.get(key);
+            String canonical = FirestoreBlockRepository.documentId(blockerId, blockedId);
+            if (backing == null) {
+                if (documentId.equals(canonical)) {
+                    remove(from, to);
+                }
+                return;
+            }
+            if (!backing.remove(documentId)) {
+                return;
+            }
+            if (backing.isEmpty()) {
+                irregular.remove(key);
+                remove(from, to);
+            } else if (backing.size() == 1 && backing.contains(canonical)) {
+                irregular.remove(key);
+            }
+        }
+
+        void removePair(String blockerId, String blockedId) {
+            Integer from = ids.get(blockerId);
+            Integer to = ids.get(blockedId);
+            if (from == null || to == null) {
+                return;
+            }
+            irregular.remove(pairKey(from, to));
+            remove(from, to);
+        }
+
+        private static long pairKey(int from, int to) {
+            return (long) from << 32 | (to & 0xFFFFFFFFL);
+        }
+
+        boolean has(String blockerId, String blockedId) {
+            Integer from = ids.get(blockerId);
+            Integer to = ids.get(blockedId);
+            return from != null && to != null && hasEdge(from, to);
+        }
+
+        private boolean hasEdge(int from, int to) {
+            return Arrays.binarySearch(adjacent(outgoing, from), to) >= 0;
+        }
+
+        List<String> names(int[][] adjacency, String userId) {
+            Integer id = ids.get(userId);
+            if (id == null) {
+                return new ArrayList<>();
+            }
+            int[] neighbours = adjacent(adjacency, id);
+            List<String> names = new ArrayList<>(neighbours.length);
+            for (int neighbour : neighbours) {
+                names.add(uids.get(neighbour));
+            }
+            return names;
+        }
+
+        private void add(int from, int to) {
+            int[] updated = insert(adjacent(outgoing, from), to);
+            if (updated != null) {
+                outgoing[from] = updated;
+                int[] reverse = insert(adjacent(incoming, to), from);
+                if (reverse != null) {
+                    incoming[to] = reverse;
+                }
+                edges++;
+            }
+        }
+
+        private void remove(int from, int to) {
+            int[] updated = delete(adjacent(outgoing, from), to);
+            if (updated != null) {
+                outgoing[from] = updated;
+                int[] reverse = delete(adjacent(incoming, to), from);
+                if (reverse != null) {
+                    incoming[to] = reverse;
+                }
+                edges--;
+            }
+        }
+
+        private int intern(String uid) {
+            Integer id = ids.get(uid);
+            if (id != null) {
+                return id;
+            }
+            int next = uids.size();
+            ids.put(uid, next);
+            uids.add(uid);
+            if (next >= outgoing.length) {
+                outgoing = Arrays.copyOf(outgoing, outgoing.length * 2);
+                incoming = Arrays.copyOf(incoming, incoming.length * 2);
+            }
+            return next;
+        }
+
+        private static int[] adjacent(int[][] adjacency, int id) {
+            int[] neighbours = id < adjacency.length ? adjacency[id] : null;
+            return neighbours != null ? neighbours : NONE;
+        }
+
+        // Sorted-array insert; null if the value was already there
+        private static int[] insert(int[] sorted, int value) {
+            int index = Arrays.binarySearch(sorted, value);
+            if (index >= 0) {
+                return null;
+            }
+            int at = -index - 1;
+            int[] result = new int[sorted.length + 1];
+            System.arraycopy(sorted, 0, result, 0, at);
+            result[at] = value;
+            System.arraycopy(sorted, at, result, at + 1, sorted.length - at);
+            return result;
+        }
+
+        // Sorted-array delete; null if the value wasn't there
+        private static int[] delete(int[] sorted, int value) {
+            int index = Arrays.binarySearch(sorted, value);
+            if (index < 0) {
+                return null;
+            }
+            if (sorted.length == 1) {
+                return NONE;
+            }
+            int[] result = new int[sorted.length - 1];
+            System.arraycopy(sorted, 0, result, 0, index);
+            System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+            return result;
+        }
+    }
+}
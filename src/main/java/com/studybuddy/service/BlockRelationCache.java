@@ -0,0 +1,125 @@
+package com.studybuddy.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Per-user cache of bidirectional block relations. Blocks made here invalidate both users straight
+ * away; blocks made on other instances show up once the entry's TTL runs out.
+ *
+ * The cache holds the lookup future itself, so concurrent misses share one load, and a load that was
+ * already running when an entry was invalidated can't put stale data back. Failed loads aren't kept.
+ */
+@Component
+public class BlockRelationCache {
+
+    // Each hit saves the blocked-by and blocking queries
+    private static final int QUERIES_PER_LOAD = 2;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${blocks.cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${blocks.cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter savedQueryCounter;
+
+    @PostConstruct
+    public void registerMetrics() {
+        hitCounter = meterRegistry.counter("blocks.cache.hits");
+        missCounter = meterRegistry.counter("blocks.cache.misses");
+        savedQueryCounter = meterRegistry.counter("blocks.cache.queries.saved");
+        Gauge.builder("blocks.cache.size", entries, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("blocks.cache.hit.ratio", this, cache -> {
+            double lookups = cache.hitCounter.count() + cache.missCounter.count();
+            return lookups > 0 ? cache.hitCounter.count() / lookups : 0;
+        }).register(meterRegistry);
+    }
+
+    /**
+     * The user's cached relations, loading them with the loader on a miss or once the TTL has passed
+     */
+    public CompletableFuture<Set<String>> get(String userId, Function<String, CompletableFuture<Set<String>>> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(userId);
+        if (entry != null && entry.expiresAt > now && !entry.relations.isCompletedExceptionally()) {
+            hitCounter.increment();
+            savedQueryCounter.increment(QUERIES_PER_LOAD);
+            return entry.relations;
+        }
+
+        missCounter.increment();
+        CompletableFuture<Set<String>> relations = new CompletableFuture<>();
+        Entry loading = new Entry(relations, now + TimeUnit.SECONDS.toMillis(ttlSeconds));
+        if (entry != null ? !entries.replace(userId, entry, loading) : entries.putIfAbsent(userId, loading) != null) {
+            // Someone else started a load first - share theirs
+            Entry winner = entries.get(userId);
+            return winner != null ? winner.relations : get(userId, loader);
+        }
+
+        loader.apply(userId).whenComplete((loaded, error) -> {
+            if (error != null) {
+                entries.remove(userId, loading);
+                relations.completeExceptionally(error);
+            } else {
+                // Immutable copy: compact, and safe to share between callers
+                relations.complete(Set.copyOf(loaded));
+            }
+        });
+
+        if (entries.size() > maxEntries) {
+            evictOldest();
+        }
+        return relations;
+    }
+
+    /**
+     * Drop the cached relations of each user involved in a block change
+     */
+    public void invalidate(String... userIds) {
+        for (String userId : userIds) {
+            entries.remove(userId);
+        }
+    }
+
+    private synchronized void evictOldest() {
+        int excess = entries.size() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        // Trim an extra tenth so a full cache doesn't sort on every miss
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                .limit(excess + maxEntries / 10)
+                .forEach(e -> entries.remove(e.getKey(), e.getValue()));
+    }
+
+    private static class Entry {
+        private final CompletableFuture<Set<String>> relations;
+        private final long expiresAt;
+
+        Entry(CompletableFuture<Set<String>> relations, long expiresAt) {
+            this.relations = relations;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package com.studybuddy.service;
 
-import com.google.cloud.firestore.*;
+import com.studybuddy.repository.BlockRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class BlockService {
 
     @Autowired
-    private Firestore firestore;
+    private BlockRepository blockRepository;
+
+    @Autowired
+    private BlockRelationCache blockRelationCache;
+
+    // Only present with the Firestore backend; queries and the relation cache cover everything else
+    @Autowired(required = false)
+    private BlockGraphIndex blockGraphIndex;
 
     /**
      * Block a user
@@ -24,22 +31,16 @@ public class BlockService {
             }
 
             // Check if already blocked
-            QuerySnapshot existing = firestore.collection("blocks")
-                    .whereEqualTo("blockerId", blockerId)
-                    .whereEqualTo("blockedId", blockedId)
-                    .get().get();
-
-            if (!existing.isEmpty()) {
+            if (blockRepository.exists(blockerId, blockedId)) {
                 throw new RuntimeException("User is already blocked");
             }
 
             // Create block record
-            Map<String, Object> blockData = new HashMap<>();
-            blockData.put("blockerId", blockerId);
-            blockData.put("blockedId", blockedId);
-            blockData.put("createdAt", System.currentTimeMillis());
-
-            firestore.collection("blocks").document().set(blockData).get();
+            blockRepository.save(blockerId, blockedId);
+            blockRelationCache.invalidate(blockerId, blockedId);
+            if (blockGraphIndex != null) {
+                blockGraphIndex.add(blockerId, blockedId);
+            }
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage());
         }
@@ -50,18 +51,13 @@ public class BlockService {
      */
     public void unblockUser(String blockerId, String blockedId) {
         try {
-            QuerySnapshot snapshot = firestore.collection("blocks")
-                    .whereEqualTo("blockerId", blockerId)
-                    .whereEqualTo("blockedId", blockedId)
-                    .get().get();
-
-            if (snapshot.isEmpty()) {
+            // Delete the block record
+            if (!blockRepository.delete(blockerId, blockedId)) {
                 throw new RuntimeException("User is not blocked");
             }
-
-            // Delete the block record
-            for (DocumentSnapshot doc : snapshot.getDocuments()) {
-                doc.getReference().delete().get();
+            blockRelationCache.invalidate(blockerId, blockedId);
+            if (blockGraphIndex != null) {
+                blockGraphIndex.remove(blockerId, blockedId);
             }
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage());
@@ -72,13 +68,11 @@ public class BlockService {
      * Check if user A has blocked user B
      */
     public boolean hasBlocked(String blockerId, String blockedId) {
+        if (indexLive()) {
+            return blockGraphIndex.hasBlocked(blockerId, blockedId);
+        }
         try {
-            QuerySnapshot snapshot = firestore.collection("blocks")
-                    .whereEqualTo("blockerId", blockerId)
-                    .whereEqualTo("blockedId", blockedId)
-                    .get().get();
-
-            return !snapshot.isEmpty();
+            return blockRepository.exists(blockerId, blockedId);
         } catch (Exception e) {
             return false;
         }
@@ -88,6 +82,9 @@ public class BlockService {
      * Check if either user has blocked the other (bidirectional check)
      */
     public boolean isBlocked(String userId1, String userId2) {
+        if (indexLive()) {
+            return blockGraphIndex.isBlocked(userId1, userId2);
+        }
         return hasBlocked(userId1, userId2) || hasBlocked(userId2, userId1);
     }
 
@@ -95,43 +92,63 @@ public class BlockService {
      * Get list of user IDs blocked by the given user
      */
     public List<String> getBlockedUsers(String userId) {
-        try {
-            QuerySnapshot snapshot = firestore.collection("blocks")
-                    .whereEqualTo("blockerId", userId)
-                    .get().get();
-
-            return snapshot.getDocuments().stream()
-                    .map(doc -> doc.getString("blockedId"))
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            return new ArrayList<>();
+        if (indexLive()) {
+            return blockGraphIndex.getBlocked(userId);
         }
+        return lenient(blockRepository.findBlockedIds(userId)).join();
     }
 
     /**
      * Get list of user IDs who have blocked the given user
      */
     public List<String> getBlockedByUsers(String userId) {
-        try {
-            QuerySnapshot snapshot = firestore.collection("blocks")
-                    .whereEqualTo("blockedId", userId)
-                    .get().get();
-
-            return snapshot.getDocuments().stream()
-                    .map(doc -> doc.getString("blockerId"))
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            return new ArrayList<>();
+        if (indexLive()) {
+            return blockGraphIndex.getBlockers(userId);
         }
+        return lenient(blockRepository.findBlockerIds(userId)).join();
     }
 
     /**
      * Get all users that should be filtered out (both directions)
      */
     public Set<String> getAllBlockedRelations(String userId) {
-        Set<String> blocked = new HashSet<>();
-        blocked.addAll(getBlockedUsers(userId));
-        blocked.addAll(getBlockedByUsers(userId));
-        return blocked;
+        return getAllBlockedRelationsAsync(userId).join();
+    }
+
+    /**
+     * Get all users that should be filtered out (both directions), from the relation cache when possible
+     */
+    public CompletableFuture<Set<String>> getAllBlockedRelationsAsync(String userId) {
+        if (indexLive()) {
+            return CompletableFuture.completedFuture(blockGraphIndex.getAllRelations(userId));
+        }
+        // A failed lookup isn't cached, but still means no blocks for this caller
+        return blockRelationCache.get(userId, this::loadBlockedRelations)
+                .exceptionally(e -> Collections.emptySet());
+    }
+
+    /**
+     * Run both direction lookups concurrently
+     */
+    private CompletableFuture<Set<String>> loadBlockedRelations(String userId) {
+        CompletableFuture<List<String>> blockedFuture = blockRepository.findBlockedIds(userId);
+        CompletableFuture<List<String>> blockedByFuture = blockRepository.findBlockerIds(userId);
+
+        return blockedFuture.thenCombine(blockedByFuture, (blocked, blockedBy) -> {
+            Set<String> relations = new HashSet<>(blocked);
+            relations.addAll(blockedBy);
+            return relations;
+        });
+    }
+
+    private boolean indexLive() {
+        return blockGraphIndex != null && blockGraphIndex.isLive();
+    }
+
+    /**
+     * A failed lookup means no blocks, rather than failing the caller
+     */
+    private CompletableFuture<List<String>> lenient(CompletableFuture<List<String>> lookup) {
+        return lookup.exceptionally(e -> new ArrayList<>());
     }
 }
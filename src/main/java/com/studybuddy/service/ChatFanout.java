@@ -0,0 +1,146 @@
+package com.studybuddy.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.studybuddy.dto.MessageResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Open chat WebSocket connections grouped by study session. New messages are pushed to every
+ * connected participant, skipping anyone with a block relation to the sender.
+ * Connections are local to this instance; clients on other instances still pick messages up by polling.
+ */
+@Component
+public class ChatFanout {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatFanout.class);
+
+    // Slow clients get dropped rather than holding up delivery to everyone else
+    private static final int SEND_TIME_LIMIT_MS = 5000;
+    private static final int SEND_BUFFER_LIMIT_BYTES = 64 * 1024;
+
+    @Autowired
+    private BlockService blockService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Set<Connection>> connectionsBySession = new ConcurrentHashMap<>();
+    private final Map<String, Connection> connectionsById = new ConcurrentHashMap<>();
+
+    private Counter deliveredCounter;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void registerMetrics() {
+        deliveredCounter = meterRegistry.counter("chat.push.delivered");
+        droppedCounter = meterRegistry.counter("chat.push.dropped");
+        Gauge.builder("chat.push.connections", connectionsById, Map::size)
+                .register(meterRegistry);
+    }
+
+    public void register(String sessionId, String uid, WebSocketSession socket) {
+        Connection connection = new Connection(sessionId, uid,
+                new ConcurrentWebSocketSessionDecorator(socket, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT_BYTES));
+        connectionsById.put(socket.getId(), connection);
+        connectionsBySession.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(connection);
+    }
+
+    public void unregister(WebSocketSession socket) {
+        Connection connection = connectionsById.remove(socket.getId());
+        if (connection == null) {
+            return;
+        }
+
+        connectionsBySession.computeIfPresent(connection.sessionId, (id, connections) -> {
+            connections.remove(connection);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+
+    public boolean hasListeners(String sessionId) {
+        return connectionsBySession.containsKey(sessionId);
+    }
+
+    /**
+     * Push a saved message to the session's connected participants.
+     * The sender's block relations are looked up once per message rather than once per recipient.
+     */
+    public void publish(MessageResponse message, Collection<String> participants) {
+        Set<Connection> connections = connectionsBySession.get(message.getSessionId());
+        if (connections == null || connections.isEmpty()) {
+            return;
+        }
+
+        blockService.getAllBlockedRelationsAsync(message.getSenderId())
+                .thenAccept(blockedRelations -> deliver(message, connections, participants, blockedRelations))
+                .exceptionally(e -> {
+                    logger.warn("Chat push for session {} failed: {}", message.getSessionId(), e.getMessage());
+                    return null;
+                });
+    }
+
+    private void deliver(MessageResponse message, Set<Connection> connections,
+                         Collection<String> participants, Set<String> blockedRelations) {
+        TextMessage payload;
+        try {
+            payload = new TextMessage(objectMapper.writeValueAsString(message));
+        } catch (IOException e) {
+            logger.warn("Could not serialise message {}: {}", message.getId(), e.getMessage());
+            return;
+        }
+
+        for (Connection connection : connections) {
+            // Kicked users may still hold a socket opened before they were removed
+            if (!participants.contains(connection.uid) || blockedRelations.contains(connection.uid)) {
+                continue;
+            }
+
+            try {
+                connection.socket.sendMessage(payload);
+                deliveredCounter.increment();
+            } catch (Exception e) {
+                droppedCounter.increment();
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        unregister(connection.socket);
+        try {
+            connection.socket.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    private static class Connection {
+        private final String sessionId;
+        private final String uid;
+        private final WebSocketSession socket;
+
+        Connection(String sessionId, String uid, WebSocketSession socket) {
+            this.sessionId = sessionId;
+            this.uid = uid;
+            this.socket = socket;
+        }
+    }
+}
@@ -1,163 +1,223 @@
 package com.studybuddy.service;
 
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.*;
 import com.studybuddy.dto.MessageRequest;
 import com.studybuddy.dto.MessageResponse;
+import com.studybuddy.dto.UserResponse;
+import com.studybuddy.repository.MessageRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static com.studybuddy.service.FirestoreFutures.withErrorPrefix;
+
 @Service
 public class ChatService {
 
     @Autowired
-    private Firestore firestore;
+    private BlockService blockService;
 
     @Autowired
-    private BlockService blockService;
+    private MessageRepository messageRepository;
 
-    public MessageResponse sendMessage(String sessionId, MessageRequest request, String senderUid) {
-        try {
-            // Verify user is a participant of the session
-            DocumentSnapshot sessionDoc = firestore.collection("sessions").document(sessionId).get().get();
-            if (!sessionDoc.exists()) {
-                throw new RuntimeException("Session not found");
-            }
-
-            List<String> participants = (List<String>) sessionDoc.get("participants");
-            if (participants == null || !participants.contains(senderUid)) {
-                throw new RuntimeException("You must be a participant to send messages");
-            }
-
-            // Get sender info
-            DocumentSnapshot userDoc = firestore.collection("users").document(senderUid).get().get();
-            String senderName = userDoc.getString("name");
-
-            // Create message document
-            Map<String, Object> messageData = new HashMap<>();
-            messageData.put("sessionId", sessionId);
-            messageData.put("senderId", senderUid);
-            messageData.put("senderName", senderName);
-            messageData.put("content", request.getContent());
-            messageData.put("timestamp", System.currentTimeMillis());
-
-            // Store message in subcollection under session
-            DocumentReference docRef = firestore.collection("sessions")
-                    .document(sessionId)
-                    .collection("messages")
-                    .document();
-            docRef.set(messageData).get();
-
-            return mapToMessageResponse(docRef.getId(), messageData);
-        } catch (Exception e) {
-            throw new RuntimeException("Error sending message: " + e.getMessage());
-        }
+    @Autowired
+    private ChatFanout chatFanout;
+
+    @Autowired
+    private ChatWaiters chatWaiters;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private SessionMembershipCache sessionMembershipCache;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Value("${chat.longpoll.max-wait-seconds:25}")
+    private int maxWaitSeconds;
+
+    @Value("${chat.history.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${chat.history.max-page-size:200}")
+    private int maxPageSize;
+
+    public CompletableFuture<MessageResponse> sendMessage(String sessionId, MessageRequest request, String senderUid) {
+        // Membership and sender lookups don't depend on each other, so issue them together
+        CompletableFuture<Set<String>> participantsFuture = sessionMembershipCache.participants(sessionId);
+        CompletableFuture<UserResponse> senderFuture = userProfileCache.get(senderUid);
+
+        CompletableFuture<MessageResponse> result = participantsFuture
+                .thenCombine(senderFuture, (participants, sender) -> {
+                    // Verify user is a participant of the session
+                    requireParticipant(participants, senderUid, "You must be a participant to send messages");
+
+                    MessageResponse message = new MessageResponse();
+                    message.setSessionId(sessionId);
+                    message.setSenderId(senderUid);
+                    message.setSenderName(sender != null ? sender.getName() : null);
+                    message.setContent(request.getContent());
+                    message.setTimestamp(System.currentTimeMillis());
+                    return message;
+                })
+                .thenCompose(messageRepository::save)
+                .thenCombine(participantsFuture, (saved, participants) -> {
+                    // Push to connected participants - delivery carries on in the background
+                    recentMessageCache.append(saved);
+                    chatFanout.publish(saved, participants);
+                    chatWaiters.signal(sessionId);
+                    return saved;
+                });
+
+        return withErrorPrefix(result, "Error sending message: ");
     }
 
-    public List<MessageResponse> getMessages(String sessionId, String userUid) {
-        try {
-            // Verify user is a participant of the session
-            DocumentSnapshot sessionDoc = firestore.collection("sessions").document(sessionId).get().get();
-            if (!sessionDoc.exists()) {
-                throw new RuntimeException("Session not found");
-            }
-
-            List<String> participants = (List<String>) sessionDoc.get("participants");
-            if (participants == null || !participants.contains(userUid)) {
-                throw new RuntimeException("You must be a participant to view messages");
-            }
-
-            // Get all blocked relations for the user
-            Set<String> blockedUsers = blockService.getAllBlockedRelations(userUid);
-
-            // Get messages ordered by timestamp
-            ApiFuture<QuerySnapshot> future = firestore.collection("sessions")
-                    .document(sessionId)
-                    .collection("messages")
-                    .orderBy("timestamp", Query.Direction.ASCENDING)
-                    .get();
-
-            List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-
-            return documents.stream()
-                    .filter(doc -> !blockedUsers.contains(doc.getString("senderId")))
-                    .map(doc -> mapToMessageResponse(doc.getId(), doc.getData()))
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            throw new RuntimeException("Error getting messages: " + e.getMessage());
-        }
+    public CompletableFuture<List<MessageResponse>> getMessages(String sessionId, String userUid) {
+        // Get messages ordered by timestamp, seeding the recent-message buffer with the full history
+        CompletableFuture<List<MessageResponse>> result = readMessages(sessionId, userUid, () -> {
+            RecentMessageCache.Buffer buffer = recentMessageCache.beginLoad(sessionId);
+            return messageRepository.findBySession(sessionId)
+                    .thenApply(messages -> {
+                        recentMessageCache.completeLoad(buffer, messages, Long.MIN_VALUE);
+                        return messages;
+                    });
+        });
+
+        return withErrorPrefix(result, "Error getting messages: ");
     }
 
-    public List<MessageResponse> getMessagesSince(String sessionId, String userUid, Long since) {
-        try {
-            // Verify user is a participant of the session
-            DocumentSnapshot sessionDoc = firestore.collection("sessions").document(sessionId).get().get();
-            if (!sessionDoc.exists()) {
-                throw new RuntimeException("Session not found");
-            }
-
-            List<String> participants = (List<String>) sessionDoc.get("participants");
-            if (participants == null || !participants.contains(userUid)) {
-                throw new RuntimeException("You must be a participant to view messages");
-            }
-
-            // Get all blocked relations for the user
-            Set<String> blockedUsers = blockService.getAllBlockedRelations(userUid);
-
-            // Get messages after the given timestamp
-            ApiFuture<QuerySnapshot> future = firestore.collection("sessions")
-                    .document(sessionId)
-                    .collection("messages")
-                    .whereGreaterThan("timestamp", since)
-                    .orderBy("timestamp", Query.Direction.ASCENDING)
-                    .get();
-
-            List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-
-            return documents.stream()
-                    .filter(doc -> !blockedUsers.contains(doc.getString("senderId")))
-                    .map(doc -> mapToMessageResponse(doc.getId(), doc.getData()))
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            throw new RuntimeException("Error getting messages: " + e.getMessage());
-        }
+    /**
+     * One page of history, starting from the newest messages and walking back with the returned cursor
+     */
+    public CompletableFuture<MessagePage> getMessagePage(String sessionId, String userUid, String before,
+                                                         Integer limit) {
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : defaultPageSize, maxPageSize));
+        MessageCursor cursor = before != null ? MessageCursor.decode(before) : null;
+        CompletableFuture<Set<String>> blockedFuture = blockService.getAllBlockedRelationsAsync(userUid);
+
+        CompletableFuture<MessagePage> result = requireViewer(sessionId, userUid)
+                .thenCompose(verified -> {
+                    // Only the newest page can seed the recent-message buffer
+                    RecentMessageCache.Buffer buffer = cursor == null ? recentMessageCache.beginLoad(sessionId) : null;
+
+                    // Fetch one extra message to know whether an older page exists
+                    return messageRepository.findBefore(sessionId, cursor != null ? cursor.getTimestamp() : null,
+                                    cursor != null ? cursor.getId() : null, pageSize + 1)
+                            .thenApply(fetched -> {
+                                boolean hasMore = fetched.size() > pageSize;
+                                List<MessageResponse> page =
+                                        new ArrayList<>(fetched.subList(0, Math.min(pageSize, fetched.size())));
+                                Collections.reverse(page);
+
+                                // The page holds everything newer than its oldest timestamp
+                                // (ties at that timestamp may be cut off)
+                                long floor = hasMore ? page.get(0).getTimestamp() : Long.MIN_VALUE;
+                                recentMessageCache.completeLoad(buffer, page, floor);
+
+                                String nextCursor = hasMore ? MessageCursor.of(page.get(0)).encode() : null;
+                                return new MessagePage(page, nextCursor);
+                            });
+                })
+                // Block filtering happens after paging, so a page can come back shorter than the limit
+                .thenCombine(blockedFuture, (page, blockedUsers) ->
+                        new MessagePage(withoutBlocked(page.getMessages(), blockedUsers), page.getNextCursor()));
+
+        return withErrorPrefix(result, "Error getting messages: ");
     }
 
-    public void deleteMessage(String sessionId, String messageId, String userUid) {
-        try {
-            DocumentReference msgRef = firestore.collection("sessions")
-                    .document(sessionId)
-                    .collection("messages")
-                    .document(messageId);
-
-            DocumentSnapshot msgDoc = msgRef.get().get();
-            if (!msgDoc.exists()) {
-                throw new RuntimeException("Message not found");
-            }
-
-            // Only sender can delete their message
-            if (!userUid.equals(msgDoc.getString("senderId"))) {
-                throw new RuntimeException("You can only delete your own messages");
-            }
-
-            msgRef.delete().get();
-        } catch (Exception e) {
-            throw new RuntimeException("Error deleting message: " + e.getMessage());
-        }
+    public CompletableFuture<List<MessageResponse>> getMessagesSince(String sessionId, String userUid, Long since) {
+        // Get messages after the given timestamp, from the recent-message buffer when it covers them
+        CompletableFuture<List<MessageResponse>> result = readMessages(sessionId, userUid, () ->
+                recentMessageCache.readSince(sessionId, since)
+                        .map(CompletableFuture::completedFuture)
+                        .orElseGet(() -> {
+                            RecentMessageCache.Buffer buffer = recentMessageCache.beginLoad(sessionId);
+                            return messageRepository.findBySessionSince(sessionId, since)
+                                    .thenApply(messages -> {
+                                        recentMessageCache.completeLoad(buffer, messages, since);
+                                        return messages;
+                                    });
+                        }));
+
+        return withErrorPrefix(result, "Error getting messages: ");
+    }
+
+    /**
+     * Long-poll variant of getMessagesSince: if nothing is new yet, park (without holding a thread)
+     * until a message is sent to the session or the wait runs out, in which case the result is empty
+     */
+    public CompletableFuture<List<MessageResponse>> waitForMessagesSince(String sessionId, String userUid,
+                                                                         Long since, int waitSeconds) {
+        long waitMs = TimeUnit.SECONDS.toMillis(Math.max(0, Math.min(waitSeconds, maxWaitSeconds)));
+        CompletableFuture<Boolean> wakeup = chatWaiters.register(sessionId, waitMs);
+
+        return getMessagesSince(sessionId, userUid, since)
+                .thenCompose(messages -> {
+                    if (!messages.isEmpty() || waitMs == 0) {
+                        return CompletableFuture.completedFuture(messages);
+                    }
+                    // A timeout skips the re-read; the client's next poll picks up anything saved elsewhere
+                    return wakeup.thenCompose(woken -> woken
+                            ? getMessagesSince(sessionId, userUid, since)
+                            : CompletableFuture.completedFuture(Collections.<MessageResponse>emptyList()));
+                })
+                .whenComplete((messages, e) -> wakeup.complete(false));
+    }
+
+    public CompletableFuture<Void> deleteMessage(String sessionId, String messageId, String userUid) {
+        CompletableFuture<Void> result = messageRepository.findById(sessionId, messageId)
+                .thenCompose(message -> {
+                    if (message == null) {
+                        throw new RuntimeException("Message not found");
+                    }
+
+                    // Only sender can delete their message
+                    if (!userUid.equals(message.getSenderId())) {
+                        throw new RuntimeException("You can only delete your own messages");
+                    }
+
+                    return messageRepository.delete(sessionId, messageId)
+                            .thenRun(() -> recentMessageCache.remove(sessionId, message));
+                });
+
+        return withErrorPrefix(result, "Error deleting message: ");
+    }
+
+    /**
+     * Run the membership check and block lookup concurrently, and only start the message read
+     * (and any buffer seeding it does) once the user is confirmed as a participant
+     */
+    private CompletableFuture<List<MessageResponse>> readMessages(String sessionId, String userUid,
+                                                                  Supplier<CompletableFuture<List<MessageResponse>>> read) {
+        CompletableFuture<Set<String>> blockedFuture = blockService.getAllBlockedRelationsAsync(userUid);
+
+        return requireViewer(sessionId, userUid)
+                .thenCompose(verified -> read.get())
+                .thenCombine(blockedFuture, this::withoutBlocked);
     }
 
-    private MessageResponse mapToMessageResponse(String id, Map<String, Object> data) {
-        MessageResponse response = new MessageResponse();
-        response.setId(id);
-        response.setSessionId((String) data.get("sessionId"));
-        response.setSenderId((String) data.get("senderId"));
-        response.setSenderName((String) data.get("senderName"));
-        response.setContent((String) data.get("content"));
-        response.setTimestamp((Long) data.get("timestamp"));
+    private CompletableFuture<Void> requireViewer(String sessionId, String userUid) {
+        return sessionMembershipCache.participants(sessionId)
+                .thenAccept(participants ->
+                        requireParticipant(participants, userUid, "You must be a participant to view messages"));
+    }
 
-        return response;
+    private List<MessageResponse> withoutBlocked(List<MessageResponse> messages, Set<String> blockedUsers) {
+        return messages.stream()
+                .filter(message -> !blockedUsers.contains(message.getSenderId()))
+                .collect(Collectors.toList());
+    }
+
+    private void requireParticipant(Set<String> participants, String userUid, String message) {
+        if (!participants.contains(userUid)) {
+            throw new RuntimeException(message);
+        }
     }
 }
@@ -0,0 +1,65 @@
+package com.studybuddy.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parked long-poll requests, keyed by study session. Sending a message wakes every waiter on that
+ * session; waiters that hear nothing complete on their own when their timeout runs out.
+ * Only messages saved on this instance trigger a wakeup.
+ */
+@Component
+public class ChatWaiters {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Set<CompletableFuture<Boolean>>> waitersBySession = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("chat.longpoll.waiting", waiting, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register interest in the next message for a session. Completes with true when a message arrives
+     * and false on timeout. Register before reading messages, so a message saved between the read and
+     * the wait still wakes the caller.
+     */
+    public CompletableFuture<Boolean> register(String sessionId, long timeoutMs) {
+        CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+        waitersBySession.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(waiter);
+        waiting.incrementAndGet();
+
+        waiter.whenComplete((done, e) -> {
+            waiting.decrementAndGet();
+            waitersBySession.computeIfPresent(sessionId, (id, waiters) -> {
+                waiters.remove(waiter);
+                return waiters.isEmpty() ? null : waiters;
+            });
+        });
+        return waiter.completeOnTimeout(false, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wake everyone waiting on a session
+     */
+    public void signal(String sessionId) {
+        Set<CompletableFuture<Boolean>> waiters = waitersBySession.remove(sessionId);
+        if (waiters != null) {
+            waiters.forEach(waiter -> waiter.complete(true));
+        }
+    }
+}
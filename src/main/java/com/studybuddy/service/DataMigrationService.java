@@ -0,0 +1,275 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.studybuddy.repository.FirestoreBlockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One-shot data migrations, each switched on by its own property and run once the app has started
+ */
+@Service
+public class DataMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataMigrationService.class);
+
+    @Autowired
+    private Firestore firestore;
+
+    @Value("${migrations.rating-aggregates.enabled:false}")
+    private boolean ratingAggregatesEnabled;
+
+    @Value("${migrations.session-spots-left.enabled:false}")
+    private boolean sessionSpotsLeftEnabled;
+
+    @Value("${migrations.session-preferences.enabled:false}")
+    private boolean sessionPreferencesEnabled;
+
+    @Value("${migrations.deterministic-ids.enabled:false}")
+    private boolean deterministicIdsEnabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void runEnabledMigrations() {
+        if (ratingAggregatesEnabled) {
+            backfillRatingAggregates();
+        }
+        if (sessionSpotsLeftEnabled) {
+            backfillSessionSpotsLeft();
+        }
+        if (sessionPreferencesEnabled) {
+            migrateSessionPreferences();
+        }
+        if (deterministicIdsEnabled) {
+            migrateDeterministicIds();
+        }
+    }
+
+    /**
+     * Backfill ratingSum/ratingCount on every user that has received a rating
+     */
+    public void backfillRatingAggregates() {
+        try {
+            logger.info("Backfilling rating aggregates...");
+
+            QuerySnapshot ratings = firestore.collection("ratings").select("toUserId").get().get();
+            Set<String> ratedUsers = new HashSet<>();
+            for (QueryDocumentSnapshot doc : ratings.getDocuments()) {
+                String toUserId = doc.getString("toUserId");
+                if (toUserId != null) {
+                    ratedUsers.add(toUserId);
+                }
+            }
+
+            int updatedCount = 0;
+            for (String userId : ratedUsers) {
+                try {
+                    DocumentReference userRef = firestore.collection("users").document(userId);
+
+                    // Recount inside a transaction so a concurrent rateUser can't be double counted
+                    firestore.runTransaction(transaction -> {
+                        QuerySnapshot received = transaction.get(firestore.collection("ratings")
+                                .whereEqualTo("toUserId", userId)).get();
+                        // Whatever sits in counter shards already counts, so the user document holds the rest
+                        QuerySnapshot shards = transaction.get(userRef.collection("ratingShards")).get();
+                        long sum = received.getDocuments().stream()
+                                .mapToLong(doc -> doc.getLong("score") != null ? doc.getLong("score") : 0L)
+                                .sum();
+                        long count = received.size();
+                        for (QueryDocumentSnapshot shard : shards.getDocuments()) {
+                            Long shardSum = shard.getLong(RatingService.RATING_SUM_FIELD);
+                            Long shardCount = shard.getLong(RatingService.RATING_COUNT_FIELD);
+                            sum -= shardSum != null ? shardSum : 0L;
+                            count -= shardCount != null ? shardCount : 0L;
+                        }
+                        transaction.set(userRef, RatingService.aggregateFields(sum, count), SetOptions.merge());
+                        return null;
+                    }).get();
+                    updatedCount++;
+                } catch (Exception e) {
+                    logger.error("Error backfilling rating aggregates for user {}: {}", userId, e.getMessage());
+                }
+            }
+
+            logger.info("Rating aggregate backfill complete. Updated {} user(s)", updatedCount);
+        } catch (Exception e) {
+            logger.error("Error during rating aggregate backfill: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Write the spotsLeft field used for sorting onto sessions created before it existed
+     */
+    public void backfillSessionSpotsLeft() {
+        try {
+            logger.info("Backfilling session spotsLeft...");
+
+            QuerySnapshot snapshot = firestore.collection("sessions").get().get();
+
+            int updatedCount = 0;
+            for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+                try {
+                    List<String> participants = (List<String>) doc.get("participants");
+                    Long maxParticipants = doc.getLong("maxParticipants");
+                    if (doc.getLong("spotsLeft") != null || maxParticipants == null) {
+                        continue;
+                    }
+
+                    long spotsLeft = maxParticipants - (participants != null ? participants.size() : 0);
+                    doc.getReference().update("spotsLeft", spotsLeft).get();
+                    updatedCount++;
+                } catch (Exception e) {
+                    logger.error("Error backfilling spotsLeft for session {}: {}", doc.getId(), e.getMessage());
+                }
+            }
+
+            logger.info("Session spotsLeft backfill complete. Updated {} session(s)", updatedCount);
+        } catch (Exception e) {
+            logger.error("Error during session spotsLeft backfill: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrite legacy comma-separated preferences strings as arrays
+     */
+    public void migrateSessionPreferences() {
+        try {
+            logger.info("Migrating session preferences to arrays...");
+
+            QuerySnapshot snapshot = firestore.collection("sessions").get().get();
+
+            int updatedCount = 0;
+            for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+                try {
+                    Object preferences = doc.get("preferences");
+                    if (!(preferences instanceof String)) {
+                        continue;
+                    }
+
+                    doc.getReference().update("preferences",
+                            SessionCodec.encodePreferences((String) preferences)).get();
+                    updatedCount++;
+                } catch (Exception e) {
+                    logger.error("Error migrating preferences for session {}: {}", doc.getId(), e.getMessage());
+                }
+            }
+
+            logger.info("Session preferences migration complete. Updated {} session(s)", updatedCount);
+        } catch (Exception e) {
+            logger.error("Error during session preferences migration: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Move blocks and ratings saved under auto-generated IDs to their {from}_{to} IDs.
+     * Safe to run while the app is serving - each document moves in its own transaction, and
+     * the services read both layouts until migrations.deterministic-ids.dual-read is turned off.
+     */
+    public void migrateDeterministicIds() {
+        try {
+            logger.info("Moving blocks and ratings to deterministic IDs...");
+
+            int movedBlocks = 0;
+            for (QueryDocumentSnapshot doc : firestore.collection("blocks").get().get().getDocuments()) {
+                String blockerId = doc.getString("blockerId");
+                String blockedId = doc.getString("blockedId");
+                if (blockerId == null || blockedId == null) {
+                    continue;
+                }
+                String targetId = FirestoreBlockRepository.documentId(blockerId, blockedId);
+                if (doc.getId().equals(targetId)) {
+                    continue;
+                }
+
+                try {
+                    moveDocument(doc.getReference(), firestore.collection("blocks").document(targetId));
+                    movedBlocks++;
+                } catch (Exception e) {
+                    logger.error("Error moving block {}: {}", doc.getId(), e.getMessage());
+                }
+            }
+
+            int movedRatings = 0;
+            for (QueryDocumentSnapshot doc : firestore.collection("ratings").get().get().getDocuments()) {
+                String fromUserId = doc.getString("fromUserId");
+                String toUserId = doc.getString("toUserId");
+                if (fromUserId == null || toUserId == null) {
+                    continue;
+                }
+                String targetId = RatingService.ratingId(fromUserId, toUserId);
+                if (doc.getId().equals(targetId)) {
+                    continue;
+                }
+
+                try {
+                    moveRating(doc.getReference(), firestore.collection("ratings").document(targetId),
+                            firestore.collection("users").document(toUserId));
+                    movedRatings++;
+                } catch (Exception e) {
+                    logger.error("Error moving rating {}: {}", doc.getId(), e.getMessage());
+                }
+            }
+
+            logger.info("Deterministic ID migration complete. Moved {} block(s) and {} rating(s)",
+                    movedBlocks, movedRatings);
+        } catch (Exception e) {
+            logger.error("Error during deterministic ID migration: {}", e.getMessage());
+        }
+    }
+
+    private void moveDocument(DocumentReference source, DocumentReference target) throws Exception {
+        firestore.runTransaction(transaction -> {
+            DocumentSnapshot current = transaction.get(source).get();
+            DocumentSnapshot existing = transaction.get(target).get();
+            if (!current.exists()) {
+                return null;
+            }
+            // A duplicate left by the old check-then-insert race just goes away
+            if (!existing.exists()) {
+                transaction.set(target, current.getData());
+            }
+            transaction.delete(source);
+            return null;
+        }).get();
+    }
+
+    private void moveRating(DocumentReference source, DocumentReference target, DocumentReference userRef)
+            throws Exception {
+        firestore.runTransaction(transaction -> {
+            DocumentSnapshot current = transaction.get(source).get();
+            DocumentSnapshot existing = transaction.get(target).get();
+            DocumentSnapshot userDoc = transaction.get(userRef).get();
+            if (!current.exists()) {
+                return null;
+            }
+
+            if (!existing.exists()) {
+                transaction.set(target, current.getData());
+            } else if (userDoc.getLong(RatingService.RATING_COUNT_FIELD) != null) {
+                // A duplicate rating was counted in the aggregates too - take it back out. For a sharded
+                // user it may have been counted in a shard, so the document's own share can go negative;
+                // only the total over document and shards has to come out right, so nothing is clamped
+                long score = current.getLong("score") != null ? current.getLong("score") : 0L;
+                transaction.update(userRef,
+                        RatingService.RATING_SUM_FIELD, FieldValue.increment(-score),
+                        RatingService.RATING_COUNT_FIELD, FieldValue.increment(-1));
+            }
+            transaction.delete(source);
+            return null;
+        }).get();
+    }
+}
@@ -0,0 +1,58 @@
+package com.studybuddy.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bridges Firestore's ApiFutures to CompletableFutures so service calls can be composed without blocking.
+ */
+public final class FirestoreFutures {
+
+    private FirestoreFutures() {
+    }
+
+    /**
+     * Complete a CompletableFuture from an ApiFuture callback instead of blocking on get()
+     */
+    public static <T> CompletableFuture<T> toCompletable(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    /**
+     * Re-throw any failure as a RuntimeException with the given prefix, like the blocking services do
+     */
+    public static <T> CompletableFuture<T> withErrorPrefix(CompletableFuture<T> future, String prefix) {
+        return future.handle((value, error) -> {
+            if (error != null) {
+                throw new RuntimeException(prefix + unwrap(error).getMessage());
+            }
+            return value;
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,76 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates how many bytes a document takes on the wire, following Firestore's storage size rules.
+ * Only used for metrics, so an approximation is fine.
+ */
+final class FirestoreSizes {
+
+    // Document name overhead on top of the ID
+    private static final int DOCUMENT_OVERHEAD = 32;
+
+    private FirestoreSizes() {
+    }
+
+    static long estimate(DocumentSnapshot doc) {
+        Map<String, Object> data = doc.getData();
+        long size = DOCUMENT_OVERHEAD + utf8Length(doc.getId()) + 1;
+        return data != null ? size + estimateMap(data) : size;
+    }
+
+    /**
+     * Estimate only the given fields, reading each one off the snapshot instead of copying the whole document
+     */
+    static long estimate(DocumentSnapshot doc, String... fields) {
+        long size = DOCUMENT_OVERHEAD + utf8Length(doc.getId()) + 1;
+        for (String field : fields) {
+            Object value = doc.get(field);
+            if (value != null) {
+                size += utf8Length(field) + 1 + estimateValue(value);
+            }
+        }
+        return size;
+    }
+
+    private static long estimateValue(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        }
+        if (value instanceof String) {
+            return utf8Length((String) value) + 1;
+        }
+        if (value instanceof Number) {
+            return 8;
+        }
+        if (value instanceof List) {
+            long size = 0;
+            for (Object element : (List<?>) value) {
+                size += estimateValue(element);
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            return estimateMap((Map<?, ?>) value);
+        }
+        // Timestamps, references and other types
+        return 16;
+    }
+
+    private static long estimateMap(Map<?, ?> map) {
+        long size = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            size += utf8Length(String.valueOf(entry.getKey())) + 1 + estimateValue(entry.getValue());
+        }
+        return size;
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,37 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.studybuddy.dto.MessageResponse;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Decodes message documents field by field straight into MessageResponse.
+ */
+public final class MessageCodec {
+
+    private MessageCodec() {
+    }
+
+    public static MessageResponse decode(DocumentSnapshot doc) {
+        return decode(doc.getId(), doc::get);
+    }
+
+    public static MessageResponse decode(String id, Map<String, Object> data) {
+        return decode(id, data::get);
+    }
+
+    private static MessageResponse decode(String id, Function<String, Object> field) {
+        MessageResponse response = new MessageResponse();
+        response.setId(id);
+        response.setSessionId((String) field.apply("sessionId"));
+        response.setSenderId((String) field.apply("senderId"));
+        response.setSenderName((String) field.apply("senderName"));
+        response.setContent((String) field.apply("content"));
+        Object timestamp = field.apply("timestamp");
+        response.setTimestamp(timestamp instanceof Number ? ((Number) timestamp).longValue() : null);
+
+        return response;
+    }
+}
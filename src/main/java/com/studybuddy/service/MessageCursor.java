@@ -0,0 +1,52 @@
+package com.studybuddy.service;
+
+import com.studybuddy.dto.MessageResponse;
+import com.studybuddy.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque chat history cursor: the timestamp and ID of the oldest message on a page.
+ * Encoded as url-safe base64 of "timestamp|id", like SessionCursor.
+ */
+class MessageCursor {
+
+    private final long timestamp;
+    private final String id;
+
+    private MessageCursor(long timestamp, String id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    static MessageCursor of(MessageResponse message) {
+        return new MessageCursor(message.getTimestamp(), message.getId());
+    }
+
+    static MessageCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|", 2);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new MessageCursor(Long.parseLong(parts[0]), parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,28 @@
+package com.studybuddy.service;
+
+import com.studybuddy.dto.MessageResponse;
+
+import java.util.List;
+
+/**
+ * One page of chat history, oldest first, with the cursor for the page before it
+ * (null when this page reaches the start of the conversation).
+ */
+public class MessagePage {
+
+    private final List<MessageResponse> messages;
+    private final String nextCursor;
+
+    MessagePage(List<MessageResponse> messages, String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<MessageResponse> getMessages() {
+        return messages;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
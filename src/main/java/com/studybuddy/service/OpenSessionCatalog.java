@@ -0,0 +1,217 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Live in-memory copy of all open sessions, kept current by a Firestore snapshot listener.
+ * Each snapshot replaces the whole catalog at once, so readers always see a consistent view.
+ */
+@Component
+public class OpenSessionCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenSessionCatalog.class);
+
+    @Autowired
+    private Firestore firestore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sessions.catalog.enabled:true}")
+    private boolean enabled;
+
+    private volatile CatalogState state;
+    private volatile boolean live;
+    private ListenerRegistration registration;
+
+    private Counter snapshotCounter;
+    private Counter hitCounter;
+    private Counter fallbackCounter;
+    private Counter disconnectCounter;
+
+    @PostConstruct
+    public void start() {
+        snapshotCounter = meterRegistry.counter("sessions.catalog.snapshots");
+        hitCounter = meterRegistry.counter("sessions.catalog.hits");
+        fallbackCounter = meterRegistry.counter("sessions.catalog.fallbacks");
+        disconnectCounter = meterRegistry.counter("sessions.catalog.disconnects");
+        Gauge.builder("sessions.catalog.size", this, c -> c.state != null ? c.state.byId.size() : 0)
+                .register(meterRegistry);
+        Gauge.builder("sessions.catalog.live", this, c -> c.live ? 1 : 0)
+                .register(meterRegistry);
+        // Time since the last snapshot was applied - the listener is silent while nothing changes
+        Gauge.builder("sessions.catalog.staleness.seconds", this,
+                        c -> c.state != null ? (System.currentTimeMillis() - c.state.appliedAt) / 1000.0 : -1)
+                .register(meterRegistry);
+        // Delay between Firestore's read time for a snapshot and the moment we applied it
+        Gauge.builder("sessions.catalog.apply.lag.ms", this,
+                        c -> c.state != null ? c.state.appliedAt - c.state.readTimeMillis : -1)
+                .register(meterRegistry);
+
+        if (enabled) {
+            subscribe();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        live = false;
+    }
+
+    /**
+     * Re-attach the listener if it was dropped after an error
+     */
+    @Scheduled(fixedDelayString = "${sessions.catalog.resubscribe-interval-ms:30000}")
+    public synchronized void ensureSubscribed() {
+        if (enabled && registration == null) {
+            logger.info("Re-subscribing open session catalog listener...");
+            subscribe();
+        }
+    }
+
+    /**
+     * True when the catalog reflects the listener and can be used instead of querying Firestore
+     */
+    public boolean isLive() {
+        return live && state != null;
+    }
+
+    /**
+     * Open sessions matching the optional year/module filters, ordered by document ID like a Firestore query
+     */
+    public List<QueryDocumentSnapshot> find(String year, String module) {
+        CatalogState current = state;
+        hitCounter.increment();
+
+        boolean filterYear = year != null && !year.isEmpty();
+        boolean filterModule = module != null && !module.isEmpty();
+
+        if (!filterYear && !filterModule) {
+            return new ArrayList<>(current.byId.values());
+        }
+
+        // Start from the smaller index and filter by the other field
+        List<QueryDocumentSnapshot> byYear = filterYear ? current.byYear.getOrDefault(year, List.of()) : null;
+        List<QueryDocumentSnapshot> byModule = filterModule ? current.byModule.getOrDefault(module, List.of()) : null;
+
+        if (byYear == null) {
+            return new ArrayList<>(byModule);
+        }
+        if (byModule == null) {
+            return new ArrayList<>(byYear);
+        }
+        if (byYear.size() <= byModule.size()) {
+            return byYear.stream()
+                    .filter(doc -> module.equals(doc.getString("module")))
+                    .collect(Collectors.toList());
+        }
+        return byModule.stream()
+                .filter(doc -> year.equals(doc.getString("year")))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * A single open session by ID, or null if it isn't in the catalog
+     */
+    public QueryDocumentSnapshot get(String sessionId) {
+        CatalogState current = state;
+        return current != null ? current.byId.get(sessionId) : null;
+    }
+
+    /**
+     * Record that a caller had to query Firestore because the catalog wasn't live
+     */
+    public void recordFallback() {
+        fallbackCounter.increment();
+    }
+
+    private synchronized void subscribe() {
+        registration = firestore.collection("sessions")
+                .whereEqualTo("status", "open")
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        onListenerError(error);
+                        return;
+                    }
+                    if (snapshot != null) {
+                        apply(snapshot);
+                    }
+                });
+    }
+
+    private void apply(QuerySnapshot snapshot) {
+        Map<String, QueryDocumentSnapshot> byId = new TreeMap<>();
+        Map<String, List<QueryDocumentSnapshot>> byYear = new HashMap<>();
+        Map<String, List<QueryDocumentSnapshot>> byModule = new HashMap<>();
+
+        for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+            byId.put(doc.getId(), doc);
+        }
+        // Index from the sorted map so each bucket keeps document ID order
+        for (QueryDocumentSnapshot doc : byId.values()) {
+            String year = doc.getString("year");
+            String module = doc.getString("module");
+            if (year != null) {
+                byYear.computeIfAbsent(year, k -> new ArrayList<>()).add(doc);
+            }
+            if (module != null) {
+                byModule.computeIfAbsent(module, k -> new ArrayList<>()).add(doc);
+            }
+        }
+
+        long readTimeMillis = snapshot.getReadTime().toDate().getTime();
+        state = new CatalogState(byId, byYear, byModule, readTimeMillis, System.currentTimeMillis());
+        live = true;
+        snapshotCounter.increment();
+    }
+
+    private synchronized void onListenerError(Exception error) {
+        logger.error("Open session catalog listener failed, falling back to direct queries: {}", error.getMessage());
+        live = false;
+        disconnectCounter.increment();
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    private static class CatalogState {
+        private final Map<String, QueryDocumentSnapshot> byId;
+        private final Map<String, List<QueryDocumentSnapshot>> byYear;
+        private final Map<String, List<QueryDocumentSnapshot>> byModule;
+        private final long readTimeMillis;
+        private final long appliedAt;
+
+        private CatalogState(Map<String, QueryDocumentSnapshot> byId,
+                             Map<String, List<QueryDocumentSnapshot>> byYear,
+                             Map<String, List<QueryDocumentSnapshot>> byModule,
+                             long readTimeMillis, long appliedAt) {
+            this.byId = byId;
+            this.byYear = byYear;
+            this.byModule = byModule;
+            this.readTimeMillis = readTimeMillis;
+            this.appliedAt = appliedAt;
+        }
+    }
+}
@@ -1,22 +1,54 @@
 package com.studybuddy.service;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
 import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.SetOptions;
 import com.studybuddy.dto.RatingRequest;
 import com.studybuddy.exception.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class RatingService {
 
+    // Running aggregates kept on the rated user's document
+    static final String RATING_SUM_FIELD = "ratingSum";
+    static final String RATING_COUNT_FIELD = "ratingCount";
+
     @Autowired
     private Firestore firestore;
 
+    @Autowired
+    private RatingShards ratingShards;
+
+    @Autowired
+    private UserStatsCache userStatsCache;
+
+    // Also look for ratings still stored under auto-generated IDs until the migration has run
+    @Value("${migrations.deterministic-ids.dual-read:true}")
+    private boolean dualRead;
+
+    /**
+     * Ratings are keyed {fromUserId}_{toUserId}, so each rater has exactly one document per user
+     */
+    public static String ratingId(String fromUserId, String toUserId) {
+        return fromUserId + "_" + toUserId;
+    }
+
     public Map<String, Object> rateUser(String fromUserId, String toUserId, RatingRequest request) {
         try {
             // Can't rate yourself
@@ -24,32 +56,84 @@ public class RatingService {
                 throw new BadRequestException("You cannot rate yourself");
             }
 
-            // Check if user has already rated this person
-            QuerySnapshot existing = firestore.collection("ratings")
-                    .whereEqualTo("fromUserId", fromUserId)
-                    .whereEqualTo("toUserId", toUserId)
-                    .get().get();
-
-            String ratingId;
-            Map<String, Object> ratingData = new HashMap<>();
-            ratingData.put("fromUserId", fromUserId);
-            ratingData.put("toUserId", toUserId);
-            ratingData.put("score", request.getScore());
-            ratingData.put("comment", request.getComment());
-            ratingData.put("timestamp", System.currentTimeMillis());
-
-            if (!existing.isEmpty()) {
-                // Update existing rating
-                ratingId = existing.getDocuments().get(0).getId();
-                firestore.collection("ratings").document(ratingId).set(ratingData).get();
-            } else {
-                // Create new rating
-                ratingId = firestore.collection("ratings").document().getId();
-                firestore.collection("ratings").document(ratingId).set(ratingData).get();
-            }
+            DocumentReference userRef = firestore.collection("users").document(toUserId);
+            DocumentReference ratingRef = firestore.collection("ratings").document(ratingId(fromUserId, toUserId));
+            int shardCount = ratingShards.shardCount(toUserId);
+
+            // Write the rating and adjust the aggregates atomically so concurrent raters can't lose updates
+            long[] aggregates = firestore.runTransaction(transaction -> {
+                // Check if user has already rated this person
+                DocumentSnapshot previous = transaction.get(ratingRef).get();
+                DocumentSnapshot legacy = null;
+                if (!previous.exists() && dualRead) {
+                    List<QueryDocumentSnapshot> found = transaction.get(legacyRatings(fromUserId, toUserId))
+                            .get().getDocuments();
+                    legacy = found.isEmpty() ? null : found.get(0);
+                }
+                // A sharded user's document isn't read at all, so raters don't queue up on it
+                DocumentSnapshot userDoc = shardCount == 0 ? transaction.get(userRef).get() : null;
+                QuerySnapshot received = null;
+                if (userDoc != null && userDoc.getLong(RATING_COUNT_FIELD) == null) {
+                    // Aggregates not backfilled yet - seed them from the existing ratings
+                    received = transaction.get(firestore.collection("ratings")
+                            .whereEqualTo("toUserId", toUserId)).get();
+                }
+
+                long sumDelta;
+                long countDelta;
+                if (previous.exists()) {
+                    // Update existing rating - only the score delta changes the sum
+                    sumDelta = request.getScore() - valueOrZero(previous.getLong("score"));
+                    countDelta = 0;
+                } else if (legacy != null) {
+                    // Same, but move the rating over to its deterministic ID on the way
+                    sumDelta = request.getScore() - valueOrZero(legacy.getLong("score"));
+                    countDelta = 0;
+                    transaction.delete(legacy.getReference());
+                } else {
+                    // Create new rating
+                    sumDelta = request.getScore();
+                    countDelta = 1;
+                }
+
+                Map<String, Object> ratingData = new HashMap<>();
+                ratingData.put("fromUserId", fromUserId);
+                ratingData.put("toUserId", toUserId);
+                ratingData.put("score", request.getScore());
+                ratingData.put("comment", request.getComment());
+                ratingData.put("timestamp", System.currentTimeMillis());
+                transaction.set(ratingRef, ratingData);
+
+                if (userDoc == null) {
+                    transaction.set(ratingShards.pickShard(toUserId, shardCount),
+                            ratingShards.increment(sumDelta, countDelta), SetOptions.merge());
+                    return null;
+                }
+
+                long sum;
+                long count;
+                if (received == null) {
+                    sum = valueOrZero(userDoc.getLong(RATING_SUM_FIELD));
+                    count = userDoc.getLong(RATING_COUNT_FIELD);
+                } else {
+                    sum = received.getDocuments().stream()
+                            .mapToLong(doc -> valueOrZero(doc.getLong("score")))
+                            .sum();
+                    count = received.size();
+                }
+                sum += sumDelta;
+                count += countDelta;
+                transaction.set(userRef, aggregateFields(sum, count), SetOptions.merge());
+
+                // Another instance may have sharded this user already - then the document is only part of it
+                ratingShards.observe(userDoc);
+                return userDoc.getLong(RatingShards.SHARD_COUNT_FIELD) == null ? new long[]{sum, count} : null;
+            }).get();
+            ratingShards.recordWrite(toUserId);
+            userStatsCache.invalidate(toUserId);
 
             // Return updated rating stats for the user
-            return getUserRatingStats(toUserId);
+            return aggregates != null ? toRatingStats(aggregates[0], aggregates[1]) : getUserRatingStats(toUserId);
         } catch (BadRequestException e) {
             throw e;
         } catch (Exception e) {
@@ -59,41 +143,118 @@ public class RatingService {
 
     public Map<String, Object> getUserRatingStats(String userId) {
         try {
-            Map<String, Object> stats = new HashMap<>();
-
-            QuerySnapshot ratings = firestore.collection("ratings")
-                    .whereEqualTo("toUserId", userId)
-                    .get().get();
-
-            if (ratings.isEmpty()) {
-                stats.put("averageRating", 0.0);
-                stats.put("ratingCount", 0);
-            } else {
-                double sum = ratings.getDocuments().stream()
-                        .mapToLong(doc -> doc.getLong("score"))
-                        .sum();
-                stats.put("averageRating", sum / ratings.size());
-                stats.put("ratingCount", ratings.size());
+            DocumentSnapshot userDoc = firestore.collection("users").document(userId).get().get();
+            Map<String, Object> stats = ratingStatsFrom(userDoc, ratingShards.totals(List.of(userDoc)).get());
+            if (stats != null) {
+                return stats;
             }
 
-            return stats;
+            // Legacy path for users whose aggregates have not been backfilled yet
+            return computeRatingStats(userId);
         } catch (Exception e) {
             throw new RuntimeException("Error getting rating stats: " + e.getMessage());
         }
     }
 
+    public CompletableFuture<Map<String, Object>> getUserRatingStatsAsync(String userId) {
+        CompletableFuture<Map<String, Object>> result = FirestoreFutures
+                .toCompletable(firestore.collection("users").document(userId).get())
+                .thenCompose(userDoc -> ratingShards.totals(List.of(userDoc))
+                        .thenCompose(shardTotals -> {
+                            Map<String, Object> stats = ratingStatsFrom(userDoc, shardTotals);
+                            // Legacy path for users whose aggregates have not been backfilled yet
+                            return stats != null ? CompletableFuture.completedFuture(stats)
+                                    : computeRatingStatsAsync(userId);
+                        }));
+        return FirestoreFutures.withErrorPrefix(result, "Error getting rating stats: ");
+    }
+
+    /**
+     * Start fetching the user documents that hold rating aggregates, so callers can overlap it with other reads
+     */
+    public ApiFuture<List<DocumentSnapshot>> fetchRatedUsers(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return ApiFutures.immediateFuture(Collections.emptyList());
+        }
+        DocumentReference[] refs = userIds.stream()
+                .map(userId -> firestore.collection("users").document(userId))
+                .toArray(DocumentReference[]::new);
+        return firestore.getAll(refs);
+    }
+
+    /**
+     * Turn fetched user documents into rating stats keyed by user ID
+     */
+    public Map<String, Map<String, Object>> collectRatingStats(List<DocumentSnapshot> userDocs) throws Exception {
+        return collectRatingStatsAsync(userDocs).get();
+    }
+
+    /**
+     * Same, composed on the shard read; users without aggregates yet are scanned concurrently
+     */
+    public CompletableFuture<Map<String, Map<String, Object>>> collectRatingStatsAsync(List<DocumentSnapshot> userDocs) {
+        return ratingShards.totals(userDocs).thenCompose(shardTotals -> {
+            Map<String, CompletableFuture<Map<String, Object>>> pending = new HashMap<>();
+            for (DocumentSnapshot userDoc : userDocs) {
+                Map<String, Object> stats = ratingStatsFrom(userDoc, shardTotals);
+                // Users without aggregates yet fall back to a scan of their ratings
+                pending.put(userDoc.getId(), stats != null ? CompletableFuture.completedFuture(stats)
+                        : computeRatingStatsAsync(userDoc.getId()));
+            }
+            return CompletableFuture.allOf(pending.values().toArray(CompletableFuture<?>[]::new))
+                    .thenApply(done -> {
+                        Map<String, Map<String, Object>> statsByUser = new HashMap<>();
+                        pending.forEach((userId, stats) -> statsByUser.put(userId, stats.join()));
+                        return statsByUser;
+                    });
+        });
+    }
+
+    /**
+     * Rating aggregates from a user document plus its shards, or null if they haven't been written yet
+     */
+    Map<String, Object> ratingStatsFrom(DocumentSnapshot userDoc, Map<String, long[]> shardTotals) {
+        if (!userDoc.exists() || userDoc.getLong(RATING_COUNT_FIELD) == null) {
+            return null;
+        }
+        long[] shards = RatingShards.of(shardTotals, userDoc.getId());
+        return toRatingStats(valueOrZero(userDoc.getLong(RATING_SUM_FIELD)) + shards[0],
+                userDoc.getLong(RATING_COUNT_FIELD) + shards[1]);
+    }
+
+    /**
+     * Recompute rating stats by scanning every rating the user has received
+     */
+    Map<String, Object> computeRatingStats(String userId) throws Exception {
+        return computeRatingStatsAsync(userId).get();
+    }
+
+    CompletableFuture<Map<String, Object>> computeRatingStatsAsync(String userId) {
+        return FirestoreFutures.toCompletable(firestore.collection("ratings")
+                        .whereEqualTo("toUserId", userId)
+                        .get())
+                .thenApply(ratings -> {
+                    long sum = ratings.getDocuments().stream()
+                            .mapToLong(doc -> valueOrZero(doc.getLong("score")))
+                            .sum();
+                    return toRatingStats(sum, ratings.size());
+                });
+    }
+
     public Map<String, Object> getMyRatingForUser(String fromUserId, String toUserId) {
         try {
-            QuerySnapshot existing = firestore.collection("ratings")
-                    .whereEqualTo("fromUserId", fromUserId)
-                    .whereEqualTo("toUserId", toUserId)
-                    .get().get();
+            DocumentSnapshot doc = firestore.collection("ratings").document(ratingId(fromUserId, toUserId)).get().get();
+            if (!doc.exists() && dualRead) {
+                List<QueryDocumentSnapshot> legacy = legacyRatings(fromUserId, toUserId).get().get().getDocuments();
+                if (!legacy.isEmpty()) {
+                    doc = legacy.get(0);
+                }
+            }
 
-            if (existing.isEmpty()) {
+            if (!doc.exists()) {
                 return null;
             }
 
-            DocumentSnapshot doc = existing.getDocuments().get(0);
             Map<String, Object> rating = new HashMap<>();
             rating.put("score", doc.getLong("score"));
             rating.put("comment", doc.getString("comment"));
@@ -102,4 +263,29 @@ public class RatingService {
             throw new RuntimeException("Error getting rating: " + e.getMessage());
         }
     }
+
+    private Query legacyRatings(String fromUserId, String toUserId) {
+        return firestore.collection("ratings")
+                .whereEqualTo("fromUserId", fromUserId)
+                .whereEqualTo("toUserId", toUserId)
+                .limit(1);
+    }
+
+    static Map<String, Object> aggregateFields(long sum, long count) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(RATING_SUM_FIELD, sum);
+        fields.put(RATING_COUNT_FIELD, count);
+        return fields;
+    }
+
+    static Map<String, Object> toRatingStats(long sum, long count) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("averageRating", count > 0 ? (double) sum / count : 0.0);
+        stats.put("ratingCount", (int) count);
+        return stats;
+    }
+
+    private static long valueOrZero(Long value) {
+        return value != null ? value : 0L;
+    }
 }
@@ -0,0 +1,257 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.studybuddy.service.FirestoreFutures.toCompletable;
+
+/**
+ * Counter shards for the rating aggregates of users who get rated faster than one document can take.
+ *
+ * A user's ratingSum/ratingCount stay on their user document; once ratings arrive faster than
+ * ratings.shards.writes-per-shard-per-second, new ratings add to one of ratingShardCount shard documents
+ * (users/{uid}/ratingShards/{n}) instead, and the totals are the user document plus every shard.
+ * The shard count only ever grows, so readers always know which shards to read. Write rates are
+ * measured per instance.
+ */
+@Component
+public class RatingShards {
+
+    private static final Logger logger = LoggerFactory.getLogger(RatingShards.class);
+
+    static final String SHARD_COUNT_FIELD = "ratingShardCount";
+
+    private static final long[] NO_SHARDS = {0, 0};
+
+    @Autowired
+    private Firestore firestore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ratings.shards.max:16}")
+    private int maxShards;
+
+    @Value("${ratings.shards.writes-per-shard-per-second:1}")
+    private double writesPerShard;
+
+    @Value("${ratings.shards.window-seconds:10}")
+    private long windowSeconds;
+
+    @Value("${ratings.shards.idle-minutes:30}")
+    private long idleMinutes;
+
+    private final Map<String, WriteRate> rates = new ConcurrentHashMap<>();
+
+    private Counter shardWriteCounter;
+    private Counter growCounter;
+
+    @PostConstruct
+    public void registerMetrics() {
+        shardWriteCounter = meterRegistry.counter("ratings.shards.writes");
+        growCounter = meterRegistry.counter("ratings.shards.grown");
+        Gauge.builder("ratings.shards.tracked.users", rates, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * How many shards this instance knows the user has - 0 means the user document holds everything
+     */
+    public int shardCount(String userId) {
+        WriteRate rate = rates.get(userId);
+        return rate != null ? rate.shards : 0;
+    }
+
+    /**
+     * Pass on a shard count read from the user document (e.g. one raised by another instance)
+     */
+    public void observe(DocumentSnapshot userDoc) {
+        Long shards = userDoc.getLong(SHARD_COUNT_FIELD);
+        if (shards != null && shards > 0) {
+            rates.computeIfAbsent(userDoc.getId(), id -> new WriteRate(System.currentTimeMillis()))
+                    .raise(shards.intValue());
+        }
+    }
+
+    /**
+     * A random shard of the user's, spreading concurrent writes over all of them
+     */
+    public DocumentReference pickShard(String userId, int shardCount) {
+        return shard(userId, ThreadLocalRandom.current().nextInt(shardCount));
+    }
+
+    /**
+     * Fields that add a score delta and count delta to a shard (merged, so a new shard starts from zero)
+     */
+    public Map<String, Object> increment(long sumDelta, long countDelta) {
+        shardWriteCounter.increment();
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(RatingService.RATING_SUM_FIELD, FieldValue.increment(sumDelta));
+        fields.put(RatingService.RATING_COUNT_FIELD, FieldValue.increment(countDelta));
+        return fields;
+    }
+
+    /**
+     * Count a rating of the user and add shards if the rate has outgrown the current ones
+     */
+    public void recordWrite(String userId) {
+        long now = System.currentTimeMillis();
+        WriteRate rate = rates.computeIfAbsent(userId, id -> new WriteRate(now));
+        int wanted = rate.record(now, TimeUnit.SECONDS.toMillis(windowSeconds), writesPerShard, maxShards);
+        if (wanted > rate.shards && rate.startGrowing()) {
+            grow(userId, wanted, rate);
+        }
+    }
+
+    /**
+     * Sum and count held in shards for each sharded user among the documents, fetched in one call
+     */
+    public CompletableFuture<Map<String, long[]>> totals(Collection<DocumentSnapshot> userDocs) {
+        List<DocumentReference> refs = new ArrayList<>();
+        for (DocumentSnapshot userDoc : userDocs) {
+            Long shards = userDoc.exists() ? userDoc.getLong(SHARD_COUNT_FIELD) : null;
+            for (int i = 0; shards != null && i < shards; i++) {
+                refs.add(shard(userDoc.getId(), i));
+            }
+        }
+        if (refs.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+
+        return toCompletable(firestore.getAll(refs.toArray(new DocumentReference[0]))).thenApply(shards -> {
+            Map<String, long[]> totals = new HashMap<>();
+            for (DocumentSnapshot shard : shards) {
+                if (!shard.exists()) {
+                    continue;
+                }
+                String userId = shard.getReference().getParent().getParent().getId();
+                long[] total = totals.computeIfAbsent(userId, id -> new long[2]);
+                total[0] += valueOrZero(shard.getLong(RatingService.RATING_SUM_FIELD));
+                total[1] += valueOrZero(shard.getLong(RatingService.RATING_COUNT_FIELD));
+            }
+            return totals;
+        });
+    }
+
+    /**
+     * The user's shard totals out of a result from totals()
+     */
+    public static long[] of(Map<String, long[]> totals, String userId) {
+        return totals.getOrDefault(userId, NO_SHARDS);
+    }
+
+    /**
+     * Forget users who haven't been rated for a while; their shard count is re-read when they are
+     */
+    @Scheduled(fixedDelayString = "${ratings.shards.sweep-interval-ms:60000}")
+    public void sweep() {
+        long idleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+        rates.values().removeIf(rate -> rate.lastWrite < idleBefore);
+    }
+
+    DocumentReference shard(String userId, int index) {
+        return firestore.collection("users").document(userId)
+                .collection("ratingShards").document(String.valueOf(index));
+    }
+
+    private void grow(String userId, int wanted, WriteRate rate) {
+        DocumentReference userRef = firestore.collection("users").document(userId);
+        toCompletable(firestore.runTransaction(transaction -> {
+            DocumentSnapshot userDoc = transaction.get(userRef).get();
+            // Shards only start once the user document has its aggregates, so the totals stay whole
+            if (userDoc.getLong(RatingService.RATING_COUNT_FIELD) == null) {
+                return 0;
+            }
+            int current = (int) valueOrZero(userDoc.getLong(SHARD_COUNT_FIELD));
+            int shards = Math.max(current, wanted);
+            if (shards > current) {
+                transaction.update(userRef, SHARD_COUNT_FIELD, shards);
+            }
+            return shards;
+        })).whenComplete((shards, error) -> {
+            if (error != null) {
+                logger.warn("Could not add rating shards for user {}: {}", userId, error.getMessage());
+            } else if (shards > rate.shards) {
+                logger.info("User {} now has {} rating shards", userId, shards);
+                growCounter.increment();
+                rate.raise(shards);
+            }
+            rate.doneGrowing();
+        });
+    }
+
+    private static long valueOrZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * Ratings of one user seen by this instance, counted over fixed windows
+     */
+    static class WriteRate {
+        private long windowStart;
+        private int writes;
+        private double lastRate;
+        private volatile int shards;
+        private volatile long lastWrite;
+        private boolean growing;
+
+        WriteRate(long now) {
+            windowStart = now;
+            lastWrite = now;
+        }
+
+        /**
+         * Count a write at time now; returns how many shards the current rate calls for (0 for none)
+         */
+        synchronized int record(long now, long windowMs, double writesPerShard, int maxShards) {
+            lastWrite = now;
+            if (now - windowStart >= windowMs) {
+                lastRate = writes * 1000.0 / (now - windowStart);
+                windowStart = now;
+                writes = 0;
+            }
+            writes++;
+
+            // The current window counts as soon as it has already outpaced the last one
+            double rate = Math.max(lastRate, writes * 1000.0 / windowMs);
+            if (rate <= writesPerShard) {
+                return 0;
+            }
+            return (int) Math.min(maxShards, Math.ceil(rate / writesPerShard));
+        }
+
+        synchronized void raise(int count) {
+            shards = Math.max(shards, count);
+        }
+
+        synchronized boolean startGrowing() {
+            if (growing) {
+                return false;
+            }
+            growing = true;
+            return true;
+        }
+
+        synchronized void doneGrowing() {
+            growing = false;
+        }
+    }
+}
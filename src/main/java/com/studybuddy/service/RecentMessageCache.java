@@ -0,0 +1,259 @@
+package com.studybuddy.service;
+
+import com.studybuddy.dto.MessageResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded buffer of each active session's most recent messages, so chat polls can be answered
+ * without a Firestore query.
+ *
+ * A buffer only answers a "since" read when it is known to hold every message newer than that time:
+ * its floor starts at whatever the read that seeded it covered, and rises as old messages are trimmed.
+ * Sent messages are only appended to buffers that already exist, so the cache assumes every message
+ * is written through this instance. It is off by default; only turn on chat.buffer.enabled for a
+ * single-instance deployment.
+ */
+@Component
+public class RecentMessageCache {
+
+    // Rough per-message overhead on top of the string contents (object headers, fields, boxed timestamp)
+    private static final long MESSAGE_OVERHEAD_BYTES = 160;
+
+    // Longer than any storage read started before a deletion can take to finish
+    private static final long DELETION_GRACE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Comparator<MessageResponse> CHRONOLOGICAL =
+            Comparator.comparing(MessageResponse::getTimestamp).thenComparing(MessageResponse::getId);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.buffer.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.buffer.capacity:200}")
+    private int capacity;
+
+    @Value("${chat.buffer.idle-minutes:30}")
+    private long idleMinutes;
+
+    @Value("${chat.buffer.max-bytes:33554432}")
+    private long maxBytes;
+
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void registerMetrics() {
+        hitCounter = meterRegistry.counter("chat.buffer.hits");
+        missCounter = meterRegistry.counter("chat.buffer.misses");
+        Gauge.builder("chat.buffer.sessions", buffers, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("chat.buffer.bytes", this, RecentMessageCache::totalBytes)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open (or reuse) a session's buffer before reading its messages from storage.
+     * Messages sent while the read is in flight are kept and merged with the result.
+     */
+    public Buffer beginLoad(String sessionId) {
+        if (!enabled) {
+            return null;
+        }
+        return buffers.computeIfAbsent(sessionId, id -> new Buffer());
+    }
+
+    /**
+     * Merge a storage read into the buffer. The read must contain every message newer than floor
+     * (Long.MIN_VALUE for a full history load).
+     */
+    public void completeLoad(Buffer buffer, List<MessageResponse> messages, long floor) {
+        if (buffer == null) {
+            return;
+        }
+        buffer.merge(messages, floor, capacity);
+        if (totalBytes() > maxBytes) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    /**
+     * Messages newer than since, if the buffer can answer for that whole range
+     */
+    public Optional<List<MessageResponse>> readSince(String sessionId, long since) {
+        Buffer buffer = enabled ? buffers.get(sessionId) : null;
+        List<MessageResponse> messages = buffer != null ? buffer.readSince(since) : null;
+
+        if (messages == null) {
+            missCounter.increment();
+            return Optional.empty();
+        }
+        hitCounter.increment();
+        return Optional.of(messages);
+    }
+
+    public void append(MessageResponse message) {
+        Buffer buffer = enabled ? buffers.get(message.getSessionId()) : null;
+        if (buffer != null) {
+            buffer.add(message, capacity);
+        }
+    }
+
+    public void remove(String sessionId, MessageResponse message) {
+        Buffer buffer = buffers.get(sessionId);
+        if (buffer != null) {
+            buffer.remove(message);
+        }
+    }
+
+    /**
+     * Drop buffers nobody has read for a while and deletions they no longer need to remember,
+     * then trim back under the memory cap
+     */
+    @Scheduled(fixedDelayString = "${chat.buffer.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        long idleBefore = now - TimeUnit.MINUTES.toMillis(idleMinutes);
+        buffers.values().removeIf(buffer -> buffer.lastAccess < idleBefore);
+        buffers.values().forEach(buffer -> buffer.pruneDeletions(now - DELETION_GRACE_MS));
+
+        if (totalBytes() > maxBytes) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    private long totalBytes() {
+        long total = 0;
+        for (Buffer buffer : buffers.values()) {
+            total += buffer.bytes;
+        }
+        return total;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        List<Map.Entry<String, Buffer>> entries = new ArrayList<>(buffers.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+
+        long total = totalBytes();
+        for (Map.Entry<String, Buffer> entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (buffers.remove(entry.getKey(), entry.getValue())) {
+                total -= entry.getValue().bytes;
+            }
+        }
+    }
+
+    private static long sizeOf(MessageResponse message) {
+        long chars = length(message.getId()) + length(message.getSessionId()) + length(message.getSenderId())
+                + length(message.getSenderName()) + length(message.getContent());
+        return MESSAGE_OVERHEAD_BYTES + 2 * chars;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    /**
+     * One session's recent messages, oldest first. Not usable for reads until a load has completed.
+     */
+    public static class Buffer {
+        private final ArrayList<MessageResponse> messages = new ArrayList<>();
+        // Deletions are remembered so a load that started before one can't bring the message back:
+        // message ID to the deleted message's timestamp and when it was deleted
+        private final Map<String, long[]> deletions = new HashMap<>();
+        private boolean loaded;
+        // Every message newer than this is in the buffer (only meaningful once loaded)
+        private long floor = Long.MIN_VALUE;
+        private volatile long bytes;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        synchronized List<MessageResponse> readSince(long since) {
+            lastAccess = System.currentTimeMillis();
+            if (!loaded || since < floor) {
+                return null;
+            }
+
+            // Find the first message after since; the tail from there is the answer
+            int index = messages.size();
+            while (index > 0 && messages.get(index - 1).getTimestamp() > since) {
+                index--;
+            }
+            return new ArrayList<>(messages.subList(index, messages.size()));
+        }
+
+        synchronized void merge(List<MessageResponse> loadedMessages, long loadFloor, int capacity) {
+            lastAccess = System.currentTimeMillis();
+            Set<String> known = new HashSet<>(deletions.keySet());
+            messages.forEach(message -> known.add(message.getId()));
+            for (MessageResponse message : loadedMessages) {
+                if (known.add(message.getId())) {
+                    messages.add(message);
+                    bytes += sizeOf(message);
+                }
+            }
+            messages.sort(CHRONOLOGICAL);
+
+            // Once loaded, the merged buffer covers whichever range is wider; before that,
+            // trims of messages sent during the load still count against the load's range
+            floor = loaded ? Math.min(floor, loadFloor) : Math.max(floor, loadFloor);
+            loaded = true;
+            trim(capacity);
+        }
+
+        synchronized void add(MessageResponse message, int capacity) {
+            // Concurrent sends can finish out of order, so insert in place rather than at the end
+            int index = Collections.binarySearch(messages, message, CHRONOLOGICAL);
+            if (index >= 0) {
+                return;
+            }
+            messages.add(-index - 1, message);
+            bytes += sizeOf(message);
+            trim(capacity);
+        }
+
+        synchronized void remove(MessageResponse deleted) {
+            deletions.put(deleted.getId(), new long[]{deleted.getTimestamp(), System.currentTimeMillis()});
+            for (Iterator<MessageResponse> it = messages.iterator(); it.hasNext(); ) {
+                MessageResponse message = it.next();
+                if (message.getId().equals(deleted.getId())) {
+                    it.remove();
+                    bytes -= sizeOf(message);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Forget deletions of messages at or below the floor once any load that could still
+         * return them has finished - reads never reach below the floor, so they can't show up again
+         */
+        synchronized void pruneDeletions(long deletedBefore) {
+            deletions.values().removeIf(deletion -> loaded && deletion[0] <= floor && deletion[1] < deletedBefore);
+        }
+
+        private void trim(int capacity) {
+            while (messages.size() > capacity) {
+                MessageResponse dropped = messages.remove(0);
+                bytes -= sizeOf(dropped);
+                // Anything at or before the dropped message may now be missing
+                floor = Math.max(floor, dropped.getTimestamp());
+            }
+        }
+    }
+}
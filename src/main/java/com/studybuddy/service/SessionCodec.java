@@ -0,0 +1,167 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.studybuddy.dto.SessionResponse;
+import com.studybuddy.dto.SessionSummaryResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Decodes session documents field by field straight into SessionResponse, without copying the
+ * document into a map first. Works on a DocumentSnapshot or on the map a session was just written from.
+ */
+final class SessionCodec {
+
+    /**
+     * Fields fetched for the summary view - what a browse card shows plus the sort keys
+     */
+    static final String[] SUMMARY_FIELDS = {
+            "title", "module", "year", "date", "time", "duration", "maxParticipants", "preferences",
+            "scheduledStartTime", "isLive", "status", "creatorId", "creatorName", "spotsLeft", "createdAt"
+    };
+
+    private SessionCodec() {
+    }
+
+    static SessionSummaryResponse decodeSummary(DocumentSnapshot doc, long now) {
+        SessionSummaryResponse response = new SessionSummaryResponse();
+        response.setId(doc.getId());
+        response.setTitle(doc.getString("title"));
+        response.setModule(doc.getString("module"));
+        response.setYear(doc.getString("year"));
+        response.setDate(doc.getString("date"));
+        response.setTime(doc.getString("time"));
+        response.setDuration(intValue(doc.get("duration"), 0));
+        response.setMaxParticipants(intValue(doc.get("maxParticipants"), 1));
+        response.setPreferences(decodePreferences(doc.get("preferences")));
+
+        Long scheduledStartTime = doc.getLong("scheduledStartTime");
+        if (scheduledStartTime != null) {
+            response.setScheduledStartTime(scheduledStartTime);
+            response.setIsScheduled(scheduledStartTime > now);
+            response.setIsLive(scheduledStartTime <= now);
+        } else {
+            response.setIsLive(Boolean.TRUE.equals(doc.getBoolean("isLive")));
+            response.setIsScheduled(false);
+        }
+
+        response.setStatus(doc.getString("status"));
+        response.setCreatorId(doc.getString("creatorId"));
+        response.setCreatorName(doc.getString("creatorName"));
+
+        // Participants aren't projected, so counts come from the stored spotsLeft when present
+        List<String> participants = stringList(doc.get("participants"));
+        Long spotsLeft = doc.getLong("spotsLeft");
+        if (participants != null) {
+            response.setParticipantCount(participants.size());
+            response.setSpotsLeft(response.getMaxParticipants() - participants.size());
+        } else if (spotsLeft != null) {
+            response.setSpotsLeft(spotsLeft.intValue());
+            response.setParticipantCount(response.getMaxParticipants() - spotsLeft.intValue());
+        }
+
+        return response;
+    }
+
+    static SessionResponse decode(DocumentSnapshot doc, long now) {
+        return decode(doc.getId(), doc::get, now);
+    }
+
+    static SessionResponse decode(String id, Map<String, Object> data, long now) {
+        return decode(id, data::get, now);
+    }
+
+    private static SessionResponse decode(String id, Function<String, Object> field, long now) {
+        SessionResponse response = new SessionResponse();
+        response.setId(id);
+        response.setTitle((String) field.apply("title"));
+        response.setModule((String) field.apply("module"));
+        response.setYear((String) field.apply("year"));
+        response.setDate((String) field.apply("date"));
+        response.setTime((String) field.apply("time"));
+        response.setDuration(intValue(field.apply("duration"), 0));
+        response.setMaxParticipants(intValue(field.apply("maxParticipants"), 1));
+        response.setPreferences(decodePreferences(field.apply("preferences")));
+        response.setDescription((String) field.apply("description"));
+
+        // Handle scheduled sessions
+        Object scheduledStartTime = field.apply("scheduledStartTime");
+        if (scheduledStartTime instanceof Number) {
+            long startTime = ((Number) scheduledStartTime).longValue();
+            response.setScheduledStartTime(startTime);
+            // Session is scheduled if the start time is still in the future
+            boolean isScheduled = startTime > now;
+            response.setIsScheduled(isScheduled);
+            // Session is live if it was started immediately OR if the scheduled time has passed
+            response.setIsLive(!isScheduled);
+        } else {
+            // Legacy sessions without scheduledStartTime
+            response.setIsLive(Boolean.TRUE.equals(field.apply("isLive")));
+            response.setIsScheduled(false);
+        }
+
+        response.setStatus((String) field.apply("status"));
+        response.setCreatorId((String) field.apply("creatorId"));
+        response.setCreatorName((String) field.apply("creatorName"));
+
+        List<String> participants = stringList(field.apply("participants"));
+        int participantCount = participants != null ? participants.size() : 0;
+        response.setParticipantCount(participantCount);
+        response.setSpotsLeft(response.getMaxParticipants() - participantCount);
+        response.setParticipants(participants);
+        response.setJoinRequests(stringList(field.apply("requests")));
+
+        return response;
+    }
+
+    /**
+     * Normalize the comma-separated preferences from a request into the array form stored in Firestore
+     */
+    static List<String> encodePreferences(String preferences) {
+        if (preferences == null || preferences.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return Arrays.stream(preferences.split(","))
+                .map(String::trim)
+                .filter(preference -> !preference.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> decodePreferences(Object preferences) {
+        if (preferences instanceof List) {
+            return stringList(preferences);
+        }
+        // Legacy comma-separated value not yet migrated to an array
+        if (preferences instanceof String) {
+            return encodePreferences((String) preferences);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Copy a Firestore array into a string list, skipping any element that isn't a string
+     */
+    private static List<String> stringList(Object value) {
+        if (!(value instanceof List)) {
+            return null;
+        }
+        List<?> list = (List<?>) value;
+        List<String> strings = new ArrayList<>(list.size());
+        for (Object element : list) {
+            if (element instanceof String) {
+                strings.add((String) element);
+            }
+        }
+        return strings;
+    }
+
+    private static int intValue(Object value, int defaultValue) {
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+}
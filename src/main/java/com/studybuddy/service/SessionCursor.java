@@ -0,0 +1,72 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.studybuddy.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque pagination cursor: the sort value and document ID of the last session on a page.
+ * Encoded as url-safe base64 of "sortField|value|id" so clients can't depend on its shape.
+ */
+class SessionCursor implements Comparable<SessionCursor> {
+
+    private final String sortField;
+    private final Long value;
+    private final String id;
+
+    private SessionCursor(String sortField, Long value, String id) {
+        this.sortField = sortField;
+        this.value = value;
+        this.id = id;
+    }
+
+    static SessionCursor of(DocumentSnapshot doc, SessionSort sort) {
+        return sort == null
+                ? new SessionCursor("", null, doc.getId())
+                : new SessionCursor(sort.getField(), doc.getLong(sort.getField()), doc.getId());
+    }
+
+    static SessionCursor decode(String cursor, SessionSort sort) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|", 3);
+            String expectedField = sort != null ? sort.getField() : "";
+            if (parts.length != 3 || !parts[0].equals(expectedField) || parts[2].isEmpty()) {
+                throw new BadRequestException("Cursor does not match the requested sort");
+            }
+            Long value = parts[1].isEmpty() ? null : Long.parseLong(parts[1]);
+            if (sort != null && value == null) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new SessionCursor(parts[0], value, parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    String encode() {
+        String raw = sortField + "|" + (value != null ? value : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Long getValue() {
+        return value;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    @Override
+    public int compareTo(SessionCursor other) {
+        if (value != null && other.value != null) {
+            int byValue = Long.compare(value, other.value);
+            if (byValue != 0) {
+                return byValue;
+            }
+        }
+        return id.compareTo(other.id);
+    }
+}
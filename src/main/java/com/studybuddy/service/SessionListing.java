@@ -0,0 +1,101 @@
+package com.studybuddy.service;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Session documents resolved for a read endpoint, before they are mapped to responses.
+ * Carries a strong ETag so conditional requests can be answered without mapping anything.
+ */
+public class SessionListing {
+
+    private final List<DocumentSnapshot> documents;
+    private final String nextCursor;
+    private final SessionView view;
+    private final String etag;
+
+    SessionListing(List<? extends DocumentSnapshot> documents, String nextCursor, SessionView view) {
+        this.documents = new ArrayList<>(documents);
+        this.nextCursor = nextCursor;
+        this.view = view;
+        this.etag = computeETag(this.documents, nextCursor, view);
+    }
+
+    public SessionView getView() {
+        return view;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    List<DocumentSnapshot> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Whether an If-None-Match header value matches this listing's ETag
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hash of each document's ID and update time, plus whether it has gone live yet - isLive/isScheduled
+     * flip with the clock rather than with a write. Creator ratings are not part of the tag.
+     */
+    private static String computeETag(List<DocumentSnapshot> documents, String nextCursor, SessionView view) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long now = System.currentTimeMillis();
+
+            // Summary and full representations of the same documents need different tags
+            digest.update(view.name().getBytes(StandardCharsets.UTF_8));
+
+            for (DocumentSnapshot doc : documents) {
+                Timestamp updateTime = doc.getUpdateTime();
+                Long scheduledStartTime = doc.getLong("scheduledStartTime");
+                boolean scheduled = scheduledStartTime != null && scheduledStartTime > now;
+
+                digest.update(doc.getId().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '|');
+                if (updateTime != null) {
+                    digest.update(updateTime.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) (scheduled ? 'S' : 'L'));
+                digest.update((byte) '\n');
+            }
+            if (nextCursor != null) {
+                digest.update(nextCursor.getBytes(StandardCharsets.UTF_8));
+            }
+
+            byte[] hash = digest.digest();
+            StringBuilder etag = new StringBuilder("\"");
+            for (int i = 0; i < 16; i++) {
+                etag.append(String.format("%02x", hash[i]));
+            }
+            return etag.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
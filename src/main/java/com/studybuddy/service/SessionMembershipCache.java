@@ -0,0 +1,252 @@
+package com.studybuddy.service;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Participant sets of sessions with active chats, used for chat authorization.
+ *
+ * A session is only cached once a read has found its document, so lookups of made-up or deleted
+ * session IDs cost one read and leave nothing behind. Each cached session holds a Firestore listener
+ * on its document, so changes made by other instances arrive on their own, and is dropped when the
+ * document goes away; writes made here are applied straight away. Updates are versioned by document
+ * update time, so a late snapshot can't undo a newer local change such as a kick.
+ */
+@Component
+public class SessionMembershipCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionMembershipCache.class);
+
+    @Autowired
+    private Firestore firestore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.membership.idle-minutes:30}")
+    private long idleMinutes;
+
+    @Value("${chat.membership.max-sessions:2000}")
+    private int maxSessions;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // First reads in flight; removing one (a local change or invalidation) keeps its result out of the cache
+    private final Map<String, CompletableFuture<Set<String>>> loading = new ConcurrentHashMap<>();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void registerMetrics() {
+        hitCounter = meterRegistry.counter("chat.membership.hits");
+        missCounter = meterRegistry.counter("chat.membership.misses");
+        Gauge.builder("chat.membership.sessions", entries, Map::size)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        entries.values().forEach(Entry::close);
+        entries.clear();
+    }
+
+    /**
+     * Current participants of a session. Fails with "Session not found" if it doesn't exist.
+     */
+    public CompletableFuture<Set<String>> participants(String sessionId) {
+        Entry entry = entries.get(sessionId);
+        if (entry != null && entry.exists) {
+            hitCounter.increment();
+            entry.lastAccess = System.currentTimeMillis();
+            return CompletableFuture.completedFuture(entry.participants);
+        }
+        missCounter.increment();
+
+        CompletableFuture<Set<String>> pending = new CompletableFuture<>();
+        CompletableFuture<Set<String>> existing = loading.putIfAbsent(sessionId, pending);
+        if (existing != null) {
+            return existing;
+        }
+
+        FirestoreFutures.toCompletable(firestore.collection("sessions").document(sessionId).get())
+                .whenComplete((snapshot, error) -> {
+                    boolean current = loading.remove(sessionId, pending);
+                    if (error != null) {
+                        pending.completeExceptionally(error);
+                        return;
+                    }
+                    if (!snapshot.exists()) {
+                        pending.completeExceptionally(new RuntimeException("Session not found"));
+                        return;
+                    }
+
+                    Entry loaded = new Entry();
+                    loaded.apply(snapshot);
+                    if (current && entries.putIfAbsent(sessionId, loaded) == null) {
+                        subscribe(sessionId, loaded);
+                    }
+                    pending.complete(loaded.participants);
+                });
+        return pending;
+    }
+
+    /**
+     * Whether the user is a participant, waiting for the first load if needed
+     */
+    public boolean isParticipant(String sessionId, String uid) {
+        try {
+            return participants(sessionId).join().contains(uid);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public void addParticipant(String sessionId, String uid, Timestamp updateTime) {
+        Entry entry = entries.get(sessionId);
+        if (entry != null) {
+            entry.change(uid, true, updateTime);
+        } else {
+            // A first read in flight may predate this change
+            loading.remove(sessionId);
+        }
+    }
+
+    public void removeParticipant(String sessionId, String uid, Timestamp updateTime) {
+        Entry entry = entries.get(sessionId);
+        if (entry != null) {
+            entry.change(uid, false, updateTime);
+        } else {
+            loading.remove(sessionId);
+        }
+    }
+
+    /**
+     * Forget a session entirely (e.g. when it is deleted)
+     */
+    public void invalidate(String sessionId) {
+        loading.remove(sessionId);
+        Entry entry = entries.remove(sessionId);
+        if (entry != null) {
+            entry.close();
+        }
+    }
+
+    /**
+     * Drop sessions nobody has chatted in for a while, then the least recently used beyond the cap
+     */
+    @Scheduled(fixedDelayString = "${chat.membership.sweep-interval-ms:60000}")
+    public void sweep() {
+        long idleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+        entries.forEach((sessionId, entry) -> {
+            if (entry.lastAccess < idleBefore) {
+                evict(sessionId, entry);
+            }
+        });
+
+        int excess = entries.size() - maxSessions;
+        if (excess > 0) {
+            entries.entrySet().stream()
+                    .sorted(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                    .limit(excess)
+                    .forEach(e -> evict(e.getKey(), e.getValue()));
+        }
+    }
+
+    private void subscribe(String sessionId, Entry entry) {
+        entry.attach(firestore.collection("sessions").document(sessionId)
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        // Stop serving possibly stale data; the next lookup reads and subscribes again
+                        logger.warn("Membership listener for session {} failed: {}", sessionId, error.getMessage());
+                        evict(sessionId, entry);
+                        return;
+                    }
+                    entry.apply(snapshot);
+                    // Deleted elsewhere - don't keep listening to a session that is gone
+                    if (!snapshot.exists()) {
+                        evict(sessionId, entry);
+                    }
+                }));
+    }
+
+    private void evict(String sessionId, Entry entry) {
+        if (entries.remove(sessionId, entry)) {
+            entry.close();
+        }
+    }
+
+    private static class Entry {
+        private volatile Set<String> participants = Collections.emptySet();
+        private volatile boolean exists;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private Timestamp version;
+        private ListenerRegistration registration;
+        private boolean closed;
+
+        synchronized void apply(DocumentSnapshot snapshot) {
+            Timestamp snapshotVersion = snapshot.exists() ? snapshot.getUpdateTime() : snapshot.getReadTime();
+            if (isOlder(snapshotVersion)) {
+                return;
+            }
+
+            List<String> list = (List<String>) snapshot.get("participants");
+            participants = list != null ? Set.copyOf(list) : Collections.emptySet();
+            exists = snapshot.exists();
+            version = snapshotVersion;
+        }
+
+        synchronized void change(String uid, boolean add, Timestamp updateTime) {
+            if (isOlder(updateTime)) {
+                return;
+            }
+
+            Set<String> updated = new HashSet<>(participants);
+            if (add) {
+                updated.add(uid);
+            } else {
+                updated.remove(uid);
+            }
+            participants = Set.copyOf(updated);
+            // A successful write means the document exists, even if no snapshot has arrived yet
+            exists = true;
+            version = updateTime;
+        }
+
+        // The listener can fire (and fail) before addSnapshotListener has even returned
+        synchronized void attach(ListenerRegistration listenerRegistration) {
+            registration = listenerRegistration;
+            if (closed) {
+                registration.remove();
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (registration != null) {
+                registration.remove();
+            }
+        }
+
+        private boolean isOlder(Timestamp candidate) {
+            return version != null && candidate != null && candidate.compareTo(version) < 0;
+        }
+    }
+}
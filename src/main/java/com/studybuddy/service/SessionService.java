@@ -4,15 +4,24 @@ import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
 import com.studybuddy.dto.SessionRequest;
 import com.studybuddy.dto.SessionResponse;
+import com.studybuddy.dto.SessionSummaryResponse;
+import com.studybuddy.dto.UserResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 @Service
 public class SessionService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SessionService.class);
+
     @Autowired
     private Firestore firestore;
 
@@ -22,14 +31,43 @@ public class SessionService {
     @Autowired
     private RatingService ratingService;
 
+    @Autowired
+    private OpenSessionCatalog openSessionCatalog;
+
+    @Autowired
+    private SessionMembershipCache sessionMembershipCache;
+
+    @Autowired
+    private UserStatsCache userStatsCache;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Compatibility flag: list every open session when no limit/cursor is given
+    @Value("${sessions.pagination.unpaged-by-default:true}")
+    private boolean unpagedByDefault;
+
+    @Value("${sessions.pagination.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${sessions.pagination.max-page-size:100}")
+    private int maxPageSize;
+
+    // Fraction of list reads whose Firestore transfer size is estimated for metrics
+    @Value("${sessions.metrics.transfer-sample-rate:0.05}")
+    private double transferSampleRate;
+
     public SessionResponse createSession(SessionRequest request, String creatorUid) {
         try {
             // Get creator info from Firestore first, then fallback to Firebase Auth
-            DocumentSnapshot userDoc = firestore.collection("users").document(creatorUid).get().get();
+            UserResponse creator = userProfileCache.get(creatorUid).get();
             String creatorName = null;
 
-            if (userDoc.exists()) {
-                creatorName = userDoc.getString("name");
+            if (creator != null) {
+                creatorName = creator.getName();
             }
 
             // Fallback to Firebase Auth displayName if Firestore doesn't have the name
@@ -76,13 +114,14 @@ public class SessionService {
 
             sessionData.put("duration", request.getDuration().longValue());
             sessionData.put("maxParticipants", request.getMaxParticipants().longValue());
-            sessionData.put("preferences", request.getPreferences() != null ? request.getPreferences() : "");
+            sessionData.put("preferences", SessionCodec.encodePreferences(request.getPreferences()));
             sessionData.put("description", request.getDescription());
             sessionData.put("scheduledStartTime", scheduledStartTime);
             sessionData.put("isLive", startNow);
             sessionData.put("creatorId", creatorUid);
             sessionData.put("creatorName", creatorName);
             sessionData.put("participants", Arrays.asList(creatorUid));
+            sessionData.put("spotsLeft", request.getMaxParticipants().longValue() - 1);
             sessionData.put("requests", new ArrayList<String>());
             sessionData.put("status", "open");
             sessionData.put("createdAt", System.currentTimeMillis());
@@ -90,90 +129,230 @@ public class SessionService {
 
             DocumentReference docRef = firestore.collection("sessions").document();
             docRef.set(sessionData).get();
+            userStatsCache.invalidate(creatorUid);
 
-            return mapToSessionResponse(docRef.getId(), sessionData);
+            SessionResponse response = SessionCodec.decode(docRef.getId(), sessionData, System.currentTimeMillis());
+            applyCreatorRating(response, lookupCreatorRating(creatorUid));
+            return response;
         } catch (Exception e) {
             throw new RuntimeException("Error creating session: " + e.getMessage());
         }
     }
 
-    public List<SessionResponse> getAllSessions(String year, String module) {
+    /**
+     * Browse open sessions. Without a limit or cursor this returns every match unless unpaged
+     * listing has been switched off, in which case the default page size applies.
+     */
+    public SessionListing findOpenSessions(String year, String module, String sort, Integer limit, String cursor,
+                                           String view) {
+        SessionView sessionView = SessionView.fromParam(view);
+        SessionSort sortOrder = SessionSort.fromParam(sort);
+        SessionCursor after = cursor != null ? SessionCursor.decode(cursor, sortOrder) : null;
+        boolean unpaged = limit == null && cursor == null && unpagedByDefault;
+        int pageSize = unpaged ? Integer.MAX_VALUE
+                : Math.min(Math.max(limit != null ? limit : defaultPageSize, 1), maxPageSize);
+
         try {
-            Query query = firestore.collection("sessions").whereEqualTo("status", "open");
+            List<QueryDocumentSnapshot> documents;
 
-            if (year != null && !year.isEmpty()) {
-                query = query.whereEqualTo("year", year);
+            if (openSessionCatalog.isLive()) {
+                // Served from the listener-fed catalog - no session reads
+                documents = pageInMemory(openSessionCatalog.find(year, module), sortOrder, after, pageSize);
+            } else {
+                openSessionCatalog.recordFallback();
+                documents = unpaged
+                        ? pageInMemory(queryOpenSessions(year, module, sessionView), sortOrder, null, pageSize)
+                        : queryOpenSessionPage(year, module, sessionView, sortOrder, after, pageSize);
+                recordTransfer(sessionView, documents);
             }
 
-            if (module != null && !module.isEmpty()) {
-                query = query.whereEqualTo("module", module);
+            // One extra document is fetched to know whether another page exists
+            String nextCursor = null;
+            if (documents.size() > pageSize) {
+                documents = documents.subList(0, pageSize);
+                nextCursor = SessionCursor.of(documents.get(pageSize - 1), sortOrder).encode();
             }
 
-            ApiFuture<QuerySnapshot> future = query.get();
-            List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-
-            System.out.println("DEBUG: Found " + documents.size() + " sessions with status=open");
-
-            return documents.stream()
-                    .map(doc -> {
-                        try {
-                            System.out.println("DEBUG: Mapping session " + doc.getId());
-                            return mapToSessionResponse(doc.getId(), doc.getData());
-                        } catch (Exception e) {
-                            System.err.println("DEBUG ERROR: Failed to map session " + doc.getId() + ": " + e.getMessage());
-                            e.printStackTrace();
-                            return null;
-                        }
-                    })
-                    .filter(s -> s != null)
-                    .collect(Collectors.toList());
+            return new SessionListing(documents, nextCursor, sessionView);
         } catch (Exception e) {
-            System.err.println("DEBUG ERROR: getAllSessions failed: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Error getting sessions: {}", e.getMessage());
             throw new RuntimeException("Error getting sessions: " + e.getMessage());
         }
     }
 
-    public SessionResponse getSessionById(String sessionId) {
+    private Query openSessionsQuery(String year, String module, SessionView view) {
+        Query query = project(firestore.collection("sessions").whereEqualTo("status", "open"), view);
+
+        if (year != null && !year.isEmpty()) {
+            query = query.whereEqualTo("year", year);
+        }
+
+        if (module != null && !module.isEmpty()) {
+            query = query.whereEqualTo("module", module);
+        }
+
+        return query;
+    }
+
+    private List<QueryDocumentSnapshot> queryOpenSessions(String year, String module, SessionView view)
+            throws Exception {
+        ApiFuture<QuerySnapshot> future = openSessionsQuery(year, module, view).get();
+        return future.get().getDocuments();
+    }
+
+    /**
+     * Fetch one page (plus one look-ahead document) straight from Firestore using startAfter
+     */
+    private List<QueryDocumentSnapshot> queryOpenSessionPage(String year, String module, SessionView view,
+                                                             SessionSort sort, SessionCursor after, int pageSize)
+            throws Exception {
+        Query query = openSessionsQuery(year, module, view);
+
+        if (sort != null) {
+            query = query.orderBy(sort.getField(), sort.getDirection())
+                    .orderBy(FieldPath.documentId(), sort.getDirection());
+            if (after != null) {
+                query = query.startAfter(after.getValue(), after.getId());
+            }
+        } else {
+            query = query.orderBy(FieldPath.documentId());
+            if (after != null) {
+                query = query.startAfter(after.getId());
+            }
+        }
+
+        return query.limit(pageSize + 1).get().get().getDocuments();
+    }
+
+    /**
+     * Apply the same ordering and cursor semantics as queryOpenSessionPage to documents already in memory
+     */
+    private List<QueryDocumentSnapshot> pageInMemory(List<QueryDocumentSnapshot> documents, SessionSort sort,
+                                                     SessionCursor after, int pageSize) {
+        Comparator<SessionCursor> keyOrder = sort != null && sort.getDirection() == Query.Direction.DESCENDING
+                ? Comparator.<SessionCursor>reverseOrder()
+                : Comparator.<SessionCursor>naturalOrder();
+
+        return documents.stream()
+                // Firestore leaves out documents missing the ordered field, so do the same here
+                .filter(doc -> sort == null || doc.getLong(sort.getField()) != null)
+                .filter(doc -> after == null || keyOrder.compare(SessionCursor.of(doc, sort), after) > 0)
+                .sorted(Comparator.comparing(doc -> SessionCursor.of(doc, sort), keyOrder))
+                .limit(pageSize == Integer.MAX_VALUE ? Long.MAX_VALUE : pageSize + 1L)
+                .collect(Collectors.toList());
+    }
+
+    public SessionListing findSession(String sessionId) {
         try {
-            DocumentSnapshot doc = firestore.collection("sessions").document(sessionId).get().get();
+            // Open sessions are already in memory; anything else is read from Firestore
+            DocumentSnapshot doc = openSessionCatalog.isLive() ? openSessionCatalog.get(sessionId) : null;
+            if (doc == null) {
+                doc = firestore.collection("sessions").document(sessionId).get().get();
+            }
             if (!doc.exists()) {
                 throw new RuntimeException("Session not found");
             }
-            return mapToSessionResponse(doc.getId(), doc.getData());
+            return new SessionListing(List.of(doc), null, SessionView.FULL);
         } catch (Exception e) {
             throw new RuntimeException("Error getting session: " + e.getMessage());
         }
     }
 
-    public List<SessionResponse> getSessionsByCreator(String creatorUid) {
+    public SessionListing findSessionsByCreator(String creatorUid, String view) {
+        SessionView sessionView = SessionView.fromParam(view);
         try {
-            QuerySnapshot snapshot = firestore.collection("sessions")
-                    .whereEqualTo("creatorId", creatorUid)
+            QuerySnapshot snapshot = project(firestore.collection("sessions")
+                    .whereEqualTo("creatorId", creatorUid), sessionView)
                     .get().get();
-
-            return snapshot.getDocuments().stream()
-                    .map(doc -> mapToSessionResponse(doc.getId(), doc.getData()))
-                    .collect(Collectors.toList());
+            recordTransfer(sessionView, snapshot.getDocuments());
+            return new SessionListing(snapshot.getDocuments(), null, sessionView);
         } catch (Exception e) {
             throw new RuntimeException("Error getting user sessions: " + e.getMessage());
         }
     }
 
-    public List<SessionResponse> getSessionsJoined(String userUid) {
+    public SessionListing findSessionsJoined(String userUid, String view) {
+        SessionView sessionView = SessionView.fromParam(view);
         try {
-            QuerySnapshot snapshot = firestore.collection("sessions")
-                    .whereArrayContains("participants", userUid)
+            QuerySnapshot snapshot = project(firestore.collection("sessions")
+                    .whereArrayContains("participants", userUid), sessionView)
                     .get().get();
-
-            return snapshot.getDocuments().stream()
-                    .map(doc -> mapToSessionResponse(doc.getId(), doc.getData()))
-                    .collect(Collectors.toList());
+            recordTransfer(sessionView, snapshot.getDocuments());
+            return new SessionListing(snapshot.getDocuments(), null, sessionView);
         } catch (Exception e) {
             throw new RuntimeException("Error getting joined sessions: " + e.getMessage());
         }
     }
 
+    /**
+     * Only fetch the summary fields from Firestore when the full document isn't needed
+     */
+    private Query project(Query query, SessionView view) {
+        return view == SessionView.SUMMARY ? query.select(SessionCodec.SUMMARY_FIELDS) : query;
+    }
+
+    /**
+     * Record the estimated Firestore bytes a sample of list reads transferred, tagged by view.
+     * Summary reads are sized from the projected fields only, without building each document's map.
+     */
+    private void recordTransfer(SessionView view, List<? extends DocumentSnapshot> documents) {
+        if (ThreadLocalRandom.current().nextDouble() >= transferSampleRate) {
+            return;
+        }
+        long bytes = 0;
+        for (DocumentSnapshot doc : documents) {
+            bytes += view == SessionView.SUMMARY
+                    ? FirestoreSizes.estimate(doc, SessionCodec.SUMMARY_FIELDS)
+                    : FirestoreSizes.estimate(doc);
+        }
+        meterRegistry.summary("sessions.list.firestore.bytes", "view", view.name().toLowerCase())
+                .record(bytes);
+    }
+
+    /**
+     * Map a listing to summary responses, enriching creators with one batched rating fetch
+     */
+    public List<SessionSummaryResponse> toSessionSummaries(SessionListing listing) {
+        List<DocumentSnapshot> documents = listing.getDocuments();
+        Map<String, Map<String, Object>> creatorRatings = fetchCreatorRatings(documents);
+        long now = System.currentTimeMillis();
+
+        List<SessionSummaryResponse> responses = new ArrayList<>(documents.size());
+        for (DocumentSnapshot doc : documents) {
+            try {
+                SessionSummaryResponse response = SessionCodec.decodeSummary(doc, now);
+                Map<String, Object> ratingStats = creatorRatings.get(response.getCreatorId());
+                response.setCreatorRating(ratingStats != null ? (Double) ratingStats.get("averageRating") : 0.0);
+                response.setCreatorRatingCount(ratingStats != null ? (Integer) ratingStats.get("ratingCount") : 0);
+                responses.add(response);
+            } catch (Exception e) {
+                logger.warn("Skipping session {} that could not be mapped: {}", doc.getId(), e.getMessage());
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Map a listing to responses, enriching creators with one batched rating fetch
+     */
+    public List<SessionResponse> toSessionResponses(SessionListing listing) {
+        List<DocumentSnapshot> documents = listing.getDocuments();
+        Map<String, Map<String, Object>> creatorRatings = fetchCreatorRatings(documents);
+        long now = System.currentTimeMillis();
+
+        List<SessionResponse> responses = new ArrayList<>(documents.size());
+        for (DocumentSnapshot doc : documents) {
+            try {
+                SessionResponse response = SessionCodec.decode(doc, now);
+                applyCreatorRating(response, creatorRatings.get(response.getCreatorId()));
+                responses.add(response);
+            } catch (Exception e) {
+                logger.warn("Skipping session {} that could not be mapped: {}", doc.getId(), e.getMessage());
+            }
+        }
+        return responses;
+    }
+
     public void requestToJoin(String sessionId, String userUid) {
         try {
             DocumentReference docRef = firestore.collection("sessions").document(sessionId);
@@ -227,19 +406,26 @@ public class SessionService {
             }
 
             // Move user from requests to participants
-            docRef.update(
+            WriteResult accepted = docRef.update(
                     "requests", FieldValue.arrayRemove(userUid),
                     "participants", FieldValue.arrayUnion(userUid),
                     "updatedAt", System.currentTimeMillis()
             ).get();
+            sessionMembershipCache.addParticipant(sessionId, userUid, accepted.getUpdateTime());
+            userStatsCache.invalidate(userUid);
 
-            // Check if session became full
+            // Refresh spotsLeft and check if session became full
             doc = docRef.get().get();
             List<String> participants = (List<String>) doc.get("participants");
             Long maxParticipants = doc.getLong("maxParticipants");
 
-            if (participants != null && maxParticipants != null && participants.size() >= maxParticipants) {
-                docRef.update("status", "full").get();
+            if (participants != null && maxParticipants != null) {
+                long spotsLeft = maxParticipants - participants.size();
+                if (spotsLeft <= 0) {
+                    docRef.update("spotsLeft", spotsLeft, "status", "full").get();
+                } else {
+                    docRef.update("spotsLeft", spotsLeft).get();
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage());
@@ -281,6 +467,11 @@ public class SessionService {
             }
 
             docRef.delete().get();
+            sessionMembershipCache.invalidate(sessionId);
+            List<String> participants = (List<String>) doc.get("participants");
+            if (participants != null) {
+                userStatsCache.invalidateAll(participants);
+            }
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage());
         }
@@ -311,10 +502,12 @@ public class SessionService {
             }
 
             // Remove user from participants
-            docRef.update(
+            WriteResult kicked = docRef.update(
                     "participants", FieldValue.arrayRemove(userIdToKick),
                     "updatedAt", System.currentTimeMillis()
             ).get();
+            sessionMembershipCache.removeParticipant(sessionId, userIdToKick, kicked.getUpdateTime());
+            userStatsCache.invalidate(userIdToKick);
 
             // If session was full, update status back to open
             doc = docRef.get().get();
@@ -322,87 +515,54 @@ public class SessionService {
             Long maxParticipants = doc.getLong("maxParticipants");
             String currentStatus = doc.getString("status");
 
-            if ("full".equals(currentStatus) && participants != null && maxParticipants != null
-                    && participants.size() < maxParticipants) {
-                docRef.update("status", "open").get();
+            if (participants != null && maxParticipants != null) {
+                long spotsLeft = maxParticipants - participants.size();
+                if ("full".equals(currentStatus) && spotsLeft > 0) {
+                    docRef.update("spotsLeft", spotsLeft, "status", "open").get();
+                } else {
+                    docRef.update("spotsLeft", spotsLeft).get();
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage());
         }
     }
 
-    private SessionResponse mapToSessionResponse(String id, Map<String, Object> data) {
-        SessionResponse response = new SessionResponse();
-        response.setId(id);
-        response.setTitle((String) data.get("title"));
-        response.setModule((String) data.get("module"));
-        response.setYear((String) data.get("year"));
-        response.setDate((String) data.get("date"));
-        response.setTime((String) data.get("time"));
-        Long duration = (Long) data.get("duration");
-        response.setDuration(duration != null ? duration.intValue() : 0);
-
-        Long maxParticipants = (Long) data.get("maxParticipants");
-        response.setMaxParticipants(maxParticipants != null ? maxParticipants.intValue() : 1);
-
-        // Convert preferences to list (handle both String and ArrayList from Firestore)
-        Object prefsData = data.get("preferences");
-        if (prefsData instanceof String) {
-            String prefsString = (String) prefsData;
-            if (!prefsString.isEmpty()) {
-                response.setPreferences(Arrays.asList(prefsString.split(",")));
-            } else {
-                response.setPreferences(new ArrayList<>());
-            }
-        } else if (prefsData instanceof List) {
-            response.setPreferences((List<String>) prefsData);
-        } else {
-            response.setPreferences(new ArrayList<>());
+    /**
+     * Fetch rating stats for every distinct creator in a result set with one multi-document read
+     */
+    private Map<String, Map<String, Object>> fetchCreatorRatings(List<? extends DocumentSnapshot> documents) {
+        Set<String> creatorIds = documents.stream()
+                .map(doc -> doc.getString("creatorId"))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        try {
+            return ratingService.collectRatingStats(ratingService.fetchRatedUsers(creatorIds).get());
+        } catch (Exception e) {
+            // Ratings are decoration - fall back to defaults rather than failing the list
+            return Collections.emptyMap();
         }
+    }
 
-        response.setDescription((String) data.get("description"));
-
-        // Handle scheduled sessions
-        Long scheduledStartTime = (Long) data.get("scheduledStartTime");
-        long currentTime = System.currentTimeMillis();
-
-        if (scheduledStartTime != null) {
-            response.setScheduledStartTime(scheduledStartTime);
-            // Session is scheduled if the start time is still in the future
-            boolean isScheduled = scheduledStartTime > currentTime;
-            response.setIsScheduled(isScheduled);
-            // Session is live if it was started immediately OR if the scheduled time has passed
-            response.setIsLive(!isScheduled);
-        } else {
-            // Legacy sessions without scheduledStartTime
-            response.setIsLive(data.get("isLive") != null ? (Boolean) data.get("isLive") : false);
-            response.setIsScheduled(false);
+    private Map<String, Object> lookupCreatorRating(String creatorId) {
+        try {
+            return ratingService.getUserRatingStats(creatorId);
+        } catch (Exception e) {
+            // Leave the rating at its defaults
+            return null;
         }
+    }
 
-        response.setStatus((String) data.get("status"));
-        response.setCreatorId((String) data.get("creatorId"));
-        response.setCreatorName((String) data.get("creatorName"));
-
-        List<String> participants = (List<String>) data.get("participants");
-        int participantCount = participants != null ? participants.size() : 0;
-        response.setParticipantCount(participantCount);
-        response.setSpotsLeft(response.getMaxParticipants() - participantCount);
-        response.setParticipants(participants);
-        response.setJoinRequests((List<String>) data.get("requests"));
-
-        // Fetch creator rating
-        String creatorId = (String) data.get("creatorId");
-        if (creatorId != null) {
-            try {
-                Map<String, Object> ratingStats = ratingService.getUserRatingStats(creatorId);
-                response.setCreatorRating((Double) ratingStats.get("averageRating"));
-                response.setCreatorRatingCount((Integer) ratingStats.get("ratingCount"));
-            } catch (Exception e) {
-                response.setCreatorRating(0.0);
-                response.setCreatorRatingCount(0);
-            }
+    private void applyCreatorRating(SessionResponse response, Map<String, Object> ratingStats) {
+        if (response.getCreatorId() == null) {
+            return;
+        }
+        if (ratingStats != null) {
+            response.setCreatorRating((Double) ratingStats.get("averageRating"));
+            response.setCreatorRatingCount((Integer) ratingStats.get("ratingCount"));
+        } else {
+            response.setCreatorRating(0.0);
+            response.setCreatorRatingCount(0);
         }
-
-        return response;
     }
 }
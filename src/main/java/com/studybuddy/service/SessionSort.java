@@ -0,0 +1,45 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.Query;
+import com.studybuddy.exception.BadRequestException;
+
+/**
+ * Server-side sort orders for browsing sessions. Each sort is tie-broken by document ID
+ * so cursors stay stable when several sessions share a value.
+ */
+public enum SessionSort {
+    SCHEDULED_START_TIME("scheduledStartTime", Query.Direction.ASCENDING),
+    SPOTS_LEFT("spotsLeft", Query.Direction.DESCENDING),
+    CREATED_AT("createdAt", Query.Direction.DESCENDING);
+
+    private final String field;
+    private final Query.Direction direction;
+
+    SessionSort(String field, Query.Direction direction) {
+        this.field = field;
+        this.direction = direction;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public Query.Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * Parse the sort request parameter (the field name), or null for document ID order
+     */
+    public static SessionSort fromParam(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        for (SessionSort sort : values()) {
+            if (sort.field.equals(value)) {
+                return sort;
+            }
+        }
+        throw new BadRequestException("Unknown sort: " + value);
+    }
+}
@@ -0,0 +1,27 @@
+package com.studybuddy.service;
+
+import com.studybuddy.exception.BadRequestException;
+
+/**
+ * How much of each session a list endpoint returns. SUMMARY is what a browse card needs and
+ * leaves out the description and the participants/requests arrays.
+ */
+public enum SessionView {
+    SUMMARY,
+    FULL;
+
+    /**
+     * Parse the view request parameter, defaulting to the full view
+     */
+    public static SessionView fromParam(String value) {
+        if (value == null || value.isEmpty()) {
+            return FULL;
+        }
+        for (SessionView view : values()) {
+            if (view.name().equalsIgnoreCase(value)) {
+                return view;
+            }
+        }
+        throw new BadRequestException("Unknown view: " + value);
+    }
+}
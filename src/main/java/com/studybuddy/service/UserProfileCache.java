@@ -0,0 +1,153 @@
+package com.studybuddy.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.studybuddy.dto.UserResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static com.studybuddy.service.FirestoreFutures.toCompletable;
+
+/**
+ * In-process cache of user profiles (name, email, year, modules) for the read paths that only need
+ * those: profile lookups, chat sender names, session creator names and login.
+ *
+ * Backed by Caffeine: entries expire after users.cache.ttl-seconds and the cache holds at most
+ * users.cache.max-entries, evicting by W-TinyLFU so a burst of one-off lookups can't flush out the
+ * profiles everyone keeps reading. Hit, miss and eviction stats are published as cache.* metrics
+ * tagged cache=users.profile.
+ *
+ * The cache holds the load future, so concurrent misses share one read. Profile writes made here
+ * invalidate the entry - an invalidation during a load drops that load's result - and with
+ * users.cache.listener.enabled, a listener on recently updated user documents refreshes entries
+ * changed by other instances too.
+ */
+@Component
+public class UserProfileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileCache.class);
+
+    @Autowired
+    private Firestore firestore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${users.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${users.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${users.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${users.cache.listener.enabled:false}")
+    private boolean listenerEnabled;
+
+    private AsyncCache<String, UserResponse> profiles;
+
+    private ListenerRegistration registration;
+
+    @PostConstruct
+    public void start() {
+        profiles = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, profiles, "users.profile");
+
+        if (enabled && listenerEnabled) {
+            subscribe();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    /**
+     * Re-attach the refresh listener if it was dropped after an error
+     */
+    @Scheduled(fixedDelayString = "${users.cache.listener.resubscribe-interval-ms:30000}")
+    public synchronized void ensureSubscribed() {
+        if (enabled && listenerEnabled && registration == null) {
+            logger.info("Re-subscribing user profile listener...");
+            subscribe();
+        }
+    }
+
+    /**
+     * The user's profile, or null if they have no user document
+     */
+    public CompletableFuture<UserResponse> get(String uid) {
+        if (!enabled) {
+            return load(uid);
+        }
+        // Missing users and failed loads complete the future without leaving an entry behind
+        return profiles.get(uid, (key, executor) -> load(key));
+    }
+
+    public void invalidate(String uid) {
+        profiles.synchronous().invalidate(uid);
+    }
+
+    private CompletableFuture<UserResponse> load(String uid) {
+        return toCompletable(firestore.collection("users").document(uid).get())
+                .thenApply(doc -> doc.exists() ? UserService.mapToUserResponse(uid, doc.getData()) : null);
+    }
+
+    // Replace a cached profile with a newer copy from the listener; uncached users stay uncached
+    private void refresh(DocumentSnapshot doc) {
+        UserResponse profile = UserService.mapToUserResponse(doc.getId(), doc.getData());
+        profiles.asMap().computeIfPresent(doc.getId(), (uid, current) -> CompletableFuture.completedFuture(profile));
+    }
+
+    private synchronized void subscribe() {
+        // Only documents updated after startup - profile writes stamp updatedAt with the current time
+        registration = firestore.collection("users")
+                .whereGreaterThan("updatedAt", System.currentTimeMillis())
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        logger.warn("User profile listener failed: {}", error.getMessage());
+                        onListenerError();
+                        return;
+                    }
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            continue;
+                        }
+                        refresh(change.getDocument());
+                    }
+                });
+    }
+
+    private synchronized void onListenerError() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        // Changes may have been missed while the listener was down
+        profiles.synchronous().invalidateAll();
+    }
+}
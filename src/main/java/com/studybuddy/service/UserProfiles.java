@@ -0,0 +1,22 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.studybuddy.dto.UserResponse;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Result of a bulk profile load: the users that were found, in the order their IDs were first given,
+ * and the IDs that had no user document. Documents are in the same order as the profiles.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class UserProfiles {
+
+    private final List<DocumentSnapshot> documents;
+    private final List<UserResponse> profiles;
+    private final List<String> missing;
+}
@@ -1,15 +1,26 @@
 package com.studybuddy.service;
 
+import com.google.cloud.firestore.AggregateQuerySnapshot;
+import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.QuerySnapshot;
+import com.studybuddy.dto.UserBatchResponse;
 import com.studybuddy.dto.UserResponse;
+import com.studybuddy.dto.UserSummaryResponse;
+import com.studybuddy.exception.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService {
@@ -17,54 +28,128 @@ public class UserService {
     @Autowired
     private Firestore firestore;
 
+    @Autowired
+    private RatingService ratingService;
+
+    @Autowired
+    private UserStatsCache userStatsCache;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Value("${users.batch.max-ids:100}")
+    private int maxBatchSize;
+
+    @Value("${users.bulk.chunk-size:100}")
+    private int bulkChunkSize;
+
     public UserResponse getUserProfile(String uid) {
         try {
-            DocumentSnapshot doc = firestore.collection("users").document(uid).get().get();
-            if (!doc.exists()) {
+            UserResponse profile = userProfileCache.get(uid).get();
+            if (profile == null) {
                 throw new RuntimeException("User not found");
             }
-            return mapToUserResponse(uid, doc.getData());
+            return profile;
         } catch (Exception e) {
             throw new RuntimeException("Error getting user: " + e.getMessage());
         }
     }
 
-    public Map<String, Object> getUserStats(String uid) {
-        try {
-            Map<String, Object> stats = new HashMap<>();
+    public CompletableFuture<UserResponse> getUserProfileAsync(String uid) {
+        CompletableFuture<UserResponse> result = userProfileCache.get(uid)
+                .thenApply(profile -> {
+                    if (profile == null) {
+                        throw new RuntimeException("User not found");
+                    }
+                    return profile;
+                });
+        return FirestoreFutures.withErrorPrefix(result, "Error getting user: ");
+    }
 
-            // Count sessions created
-            QuerySnapshot createdSessions = firestore.collection("sessions")
-                    .whereEqualTo("creatorId", uid)
-                    .get().get();
-            stats.put("sessionsCreated", createdSessions.size());
-
-            // Count sessions joined
-            QuerySnapshot joinedSessions = firestore.collection("sessions")
-                    .whereArrayContains("participants", uid)
-                    .get().get();
-            stats.put("sessionsJoined", joinedSessions.size());
-
-            // Get ratings
-            QuerySnapshot ratings = firestore.collection("ratings")
-                    .whereEqualTo("toUserId", uid)
-                    .get().get();
-
-            if (ratings.isEmpty()) {
-                stats.put("averageRating", 0.0);
-                stats.put("ratingCount", 0);
-            } else {
-                double sum = ratings.getDocuments().stream()
-                        .mapToLong(doc -> doc.getLong("score"))
-                        .sum();
-                stats.put("averageRating", sum / ratings.size());
-                stats.put("ratingCount", ratings.size());
-            }
+    /**
+     * Sessions created and joined, counted server-side, plus the rating aggregates - a handful of
+     * reads however active the user is
+     */
+    public CompletableFuture<Map<String, Object>> getUserStatsAsync(String uid) {
+        return FirestoreFutures.withErrorPrefix(userStatsCache.get(uid, this::loadUserStats),
+                "Error getting user stats: ");
+    }
 
+    private CompletableFuture<Map<String, Object>> loadUserStats(String uid) {
+        CompletableFuture<AggregateQuerySnapshot> created = FirestoreFutures.toCompletable(
+                firestore.collection("sessions").whereEqualTo("creatorId", uid).count().get());
+        CompletableFuture<AggregateQuerySnapshot> joined = FirestoreFutures.toCompletable(
+                firestore.collection("sessions").whereArrayContains("participants", uid).count().get());
+        CompletableFuture<Map<String, Object>> ratings = ratingService.getUserRatingStatsAsync(uid);
+
+        return CompletableFuture.allOf(created, joined, ratings).thenApply(done -> {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("sessionsCreated", (int) created.join().getCount());
+            stats.put("sessionsJoined", (int) joined.join().getCount());
+            stats.put("averageRating", ratings.join().get("averageRating"));
+            stats.put("ratingCount", ratings.join().get("ratingCount"));
             return stats;
-        } catch (Exception e) {
-            throw new RuntimeException("Error getting user stats: " + e.getMessage());
+        });
+    }
+
+    /**
+     * Profiles and rating summaries for a list of users, deduplicated and fetched with multi-document reads
+     */
+    public CompletableFuture<UserBatchResponse> getUserSummariesAsync(List<String> uids) {
+        Set<String> unique = new LinkedHashSet<>(uids);
+        unique.removeIf(uid -> uid == null || uid.isBlank());
+        if (unique.size() > maxBatchSize) {
+            throw new BadRequestException("At most " + maxBatchSize + " users can be requested at once");
         }
+
+        // loadProfilesAsync already prefixes its own failures
+        return loadProfilesAsync(unique).thenCompose(loaded -> FirestoreFutures.withErrorPrefix(
+                ratingService.collectRatingStatsAsync(loaded.getDocuments()), "Error getting users: ")
+                .thenApply(ratings -> {
+                    List<UserSummaryResponse> users = loaded.getProfiles().stream()
+                            .map(user -> toSummary(user, ratings.get(user.getId())))
+                            .collect(Collectors.toList());
+                    return new UserBatchResponse(users, loaded.getMissing());
+                }));
+    }
+
+    /**
+     * Load many profiles at once. IDs are deduplicated and fetched with getAll in chunks of
+     * users.bulk.chunk-size, all chunks in flight together; profiles come back in input order.
+     */
+    public CompletableFuture<UserProfiles> loadProfilesAsync(Collection<String> uids) {
+        List<String> unique = uids.stream()
+                .filter(uid -> uid != null && !uid.isBlank())
+                .distinct()
+                .collect(Collectors.toList());
+
+        List<CompletableFuture<List<DocumentSnapshot>>> chunks = new ArrayList<>();
+        for (int start = 0; start < unique.size(); start += bulkChunkSize) {
+            DocumentReference[] refs = unique.subList(start, Math.min(start + bulkChunkSize, unique.size())).stream()
+                    .map(uid -> firestore.collection("users").document(uid))
+                    .toArray(DocumentReference[]::new);
+            chunks.add(FirestoreFutures.toCompletable(firestore.getAll(refs)));
+        }
+
+        CompletableFuture<UserProfiles> result = CompletableFuture.allOf(chunks.toArray(CompletableFuture<?>[]::new))
+                .thenApply(done -> {
+                    // getAll keeps request order within a chunk, and chunks are joined in order
+                    List<DocumentSnapshot> found = new ArrayList<>();
+                    List<UserResponse> profiles = new ArrayList<>();
+                    List<String> missing = new ArrayList<>();
+                    for (CompletableFuture<List<DocumentSnapshot>> chunk : chunks) {
+                        for (DocumentSnapshot doc : chunk.join()) {
+                            if (doc.exists()) {
+                                found.add(doc);
+                                profiles.add(mapToUserResponse(doc.getId(), doc.getData()));
+                            } else {
+                                missing.add(doc.getId());
+                            }
+                        }
+                    }
+                    return new UserProfiles(List.copyOf(found), List.copyOf(profiles), List.copyOf(missing));
+                });
+        return FirestoreFutures.withErrorPrefix(result, "Error getting users: ");
     }
 
     public void updateModules(String uid, List<String> modules) {
@@ -72,12 +157,25 @@ public class UserService {
             firestore.collection("users").document(uid)
                     .update("modules", modules, "updatedAt", System.currentTimeMillis())
                     .get();
+            userProfileCache.invalidate(uid);
         } catch (Exception e) {
             throw new RuntimeException("Error updating modules: " + e.getMessage());
         }
     }
 
-    private UserResponse mapToUserResponse(String uid, Map<String, Object> data) {
+    private static UserSummaryResponse toSummary(UserResponse user, Map<String, Object> ratingStats) {
+        return UserSummaryResponse.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .email(user.getEmail())
+                .year(user.getYear())
+                .modules(user.getModules())
+                .averageRating(ratingStats != null ? (Double) ratingStats.get("averageRating") : 0.0)
+                .ratingCount(ratingStats != null ? (Integer) ratingStats.get("ratingCount") : 0)
+                .build();
+    }
+
+    static UserResponse mapToUserResponse(String uid, Map<String, Object> data) {
         UserResponse response = new UserResponse();
         response.setId(uid);
         response.setName((String) data.get("name"));
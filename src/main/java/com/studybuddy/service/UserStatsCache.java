@@ -0,0 +1,115 @@
+package com.studybuddy.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Short-lived cache of profile stats, so reopening a profile doesn't re-run the count queries.
+ * Session and rating changes made here invalidate the users involved; anything else shows up
+ * once the TTL runs out. Like the block relation cache, it holds the load future so concurrent
+ * misses share one load.
+ */
+@Component
+public class UserStatsCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${users.stats.cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @Value("${users.stats.cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void registerMetrics() {
+        hitCounter = meterRegistry.counter("users.stats.cache.hits");
+        missCounter = meterRegistry.counter("users.stats.cache.misses");
+        Gauge.builder("users.stats.cache.size", entries, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The user's cached stats, loading them with the loader on a miss or once the TTL has passed
+     */
+    public CompletableFuture<Map<String, Object>> get(String userId,
+                                                      Function<String, CompletableFuture<Map<String, Object>>> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(userId);
+        if (entry != null && entry.expiresAt > now && !entry.stats.isCompletedExceptionally()) {
+            hitCounter.increment();
+            return entry.stats;
+        }
+
+        missCounter.increment();
+        CompletableFuture<Map<String, Object>> stats = new CompletableFuture<>();
+        Entry loading = new Entry(stats, now + TimeUnit.SECONDS.toMillis(ttlSeconds));
+        if (entry != null ? !entries.replace(userId, entry, loading) : entries.putIfAbsent(userId, loading) != null) {
+            // Someone else started a load first - share theirs
+            Entry winner = entries.get(userId);
+            return winner != null ? winner.stats : get(userId, loader);
+        }
+
+        loader.apply(userId).whenComplete((loaded, error) -> {
+            if (error != null) {
+                entries.remove(userId, loading);
+                stats.completeExceptionally(error);
+            } else {
+                stats.complete(Map.copyOf(loaded));
+            }
+        });
+
+        if (entries.size() > maxEntries) {
+            evictOldest();
+        }
+        return stats;
+    }
+
+    public void invalidate(String... userIds) {
+        for (String userId : userIds) {
+            entries.remove(userId);
+        }
+    }
+
+    public void invalidateAll(Collection<String> userIds) {
+        userIds.forEach(entries::remove);
+    }
+
+    private synchronized void evictOldest() {
+        int excess = entries.size() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        // Trim an extra tenth so a full cache doesn't sort on every miss
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                .limit(excess + maxEntries / 10)
+                .forEach(e -> entries.remove(e.getKey(), e.getValue()));
+    }
+
+    private static class Entry {
+        private final CompletableFuture<Map<String, Object>> stats;
+        private final long expiresAt;
+
+        Entry(CompletableFuture<Map<String, Object>> stats, long expiresAt) {
+            this.stats = stats;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
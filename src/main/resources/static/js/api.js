@@ -60,6 +60,21 @@ const API = {
         return this.request(endpoint, { method: 'GET' });
     },
 
+    // GET a page of results along with the cursor for the next page (X-Next-Cursor header)
+    async getPage(endpoint) {
+        const response = await fetch(`${this.baseUrl}${endpoint}`, {
+            method: 'GET',
+            headers: this.getHeaders()
+        });
+        const data = await response.json();
+
+        if (!response.ok) {
+            throw new Error(data.error || data.message || 'Request failed');
+        }
+
+        return { data, nextCursor: response.headers.get('X-Next-Cursor') };
+    },
+
     // POST request
     async post(endpoint, body) {
         return this.request(endpoint, {
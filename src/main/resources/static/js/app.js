@@ -165,11 +165,15 @@ const App = {
 
         try {
             // Fetch user data, rating, and block status
-            const [user, ratingData, blockStatus] = await Promise.all([
-                API.get(`/users/${this.viewingUserId}`),
-                API.get(`/users/${this.viewingUserId}/rating`),
+            const [batch, blockStatus] = await Promise.all([
+                API.get(`/users/batch?ids=${encodeURIComponent(this.viewingUserId)}`),
                 API.get(`/users/${this.viewingUserId}/block-status`)
             ]);
+            const user = batch.users[0];
+            if (!user) {
+                throw new Error('User not found');
+            }
+            const ratingData = user;
 
             // Update UI
             const initials = user.name ? user.name.split(' ').map(n => n[0]).join('').toUpperCase().substring(0, 2) : 'U';
@@ -692,12 +696,16 @@ const App = {
 
         try {
             // Fetch user data, rating, and block status
-            const [user, ratingData, myRating, blockStatus] = await Promise.all([
-                API.get(`/users/${userId}`),
-                API.get(`/users/${userId}/rating`),
+            const [batch, myRating, blockStatus] = await Promise.all([
+                API.get(`/users/batch?ids=${encodeURIComponent(userId)}`),
                 API.get(`/users/${userId}/my-rating`),
                 API.get(`/users/${userId}/block-status`)
             ]);
+            const user = batch.users[0];
+            if (!user) {
+                throw new Error('User not found');
+            }
+            const ratingData = user;
 
             this.currentProfileUserId = userId;
             this.currentSessionIdForKick = sessionId;
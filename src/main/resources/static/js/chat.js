@@ -3,8 +3,16 @@
 const Chat = {
     currentSessionId: null,
     messages: [],
-    pollInterval: null,
+    polling: false,
+    pollGeneration: 0,
     lastTimestamp: 0,
+    socket: null,
+    reconnectTimer: null,
+    reconnectDelay: 1000,
+    longPollWaitSeconds: 25,
+    historyPageSize: 50,
+    olderCursor: null,
+    loadingOlder: false,
 
     // Initialize chat for a session
     async init(sessionId) {
@@ -14,6 +22,17 @@ const Chat = {
         this.currentSessionId = sessionId;
         this.messages = [];
         this.lastTimestamp = 0;
+        this.olderCursor = null;
+
+        // Load older history when scrolled to the top
+        const container = document.getElementById('chatMessages');
+        if (container) {
+            container.onscroll = () => {
+                if (container.scrollTop === 0) {
+                    this.loadOlderMessages();
+                }
+            };
+        }
 
         // Set up form handler - remove any existing handler first
         const chatForm = document.getElementById('chatForm');
@@ -35,27 +54,122 @@ const Chat = {
         // Load existing messages
         await this.loadMessages();
 
-        // Start polling for new messages
+        // Start polling for new messages, then switch to push once the socket connects
         this.startPolling();
+        this.connectSocket();
+    },
+
+    // Open a push connection for the current session (polling stays as the fallback)
+    connectSocket() {
+        if (!('WebSocket' in window) || !this.currentSessionId) return;
+
+        const sessionId = this.currentSessionId;
+        const protocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:';
+        const url = `${protocol}//${window.location.host}/ws/chat` +
+            `?sessionId=${encodeURIComponent(sessionId)}&token=${encodeURIComponent(API.getToken())}`;
+        const socket = new WebSocket(url);
+        this.socket = socket;
+
+        socket.onopen = () => {
+            this.reconnectDelay = 1000;
+            this.stopPolling();
+            // Pick up anything sent while the socket was connecting
+            this.checkNewMessages();
+        };
+
+        socket.onmessage = (event) => {
+            if (this.currentSessionId !== sessionId) return;
+            this.addMessages([JSON.parse(event.data)]);
+        };
+
+        socket.onclose = () => {
+            if (this.socket !== socket) return;
+            this.socket = null;
+            if (this.currentSessionId !== sessionId) return;
+
+            // Fall back to polling and retry the socket with backoff
+            this.startPolling();
+            this.reconnectTimer = setTimeout(() => this.connectSocket(), this.reconnectDelay);
+            this.reconnectDelay = Math.min(this.reconnectDelay * 2, 30000);
+        };
+    },
+
+    // Close the push connection without triggering a reconnect
+    disconnectSocket() {
+        if (this.reconnectTimer) {
+            clearTimeout(this.reconnectTimer);
+            this.reconnectTimer = null;
+        }
+        if (this.socket) {
+            const socket = this.socket;
+            this.socket = null;
+            socket.close();
+        }
     },
 
-    // Load all messages for the session
+    // Append messages that aren't already shown (pushes and polls can overlap)
+    addMessages(newMessages) {
+        const known = new Set(this.messages.map(msg => msg.id));
+        const fresh = newMessages.filter(msg => !known.has(msg.id));
+        if (fresh.length === 0) return;
+
+        this.messages.push(...fresh);
+        this.lastTimestamp = Math.max(this.lastTimestamp, ...fresh.map(msg => msg.timestamp));
+
+        this.renderMessages();
+        this.scrollToBottom();
+    },
+
+    // Load the newest page of messages for the session
     async loadMessages() {
         try {
-            const messages = await API.get(`/sessions/${this.currentSessionId}/chat`);
+            const page = await API.getPage(
+                `/sessions/${this.currentSessionId}/chat?limit=${this.historyPageSize}`
+            );
+            const messages = page.data;
             this.messages = messages;
+            this.olderCursor = page.nextCursor;
 
             if (messages.length > 0) {
                 this.lastTimestamp = messages[messages.length - 1].timestamp;
             }
 
             this.renderMessages();
+            this.scrollToBottom();
         } catch (error) {
             console.error('Error loading messages:', error);
             this.updateStatus('Error loading messages');
         }
     },
 
+    // Load the page before the oldest message shown, keeping the scroll position
+    async loadOlderMessages() {
+        if (!this.olderCursor || this.loadingOlder) return;
+
+        const sessionId = this.currentSessionId;
+        this.loadingOlder = true;
+        try {
+            const page = await API.getPage(
+                `/sessions/${sessionId}/chat?limit=${this.historyPageSize}` +
+                `&before=${encodeURIComponent(this.olderCursor)}`
+            );
+            if (this.currentSessionId !== sessionId) return;
+
+            const known = new Set(this.messages.map(msg => msg.id));
+            this.messages = page.data.filter(msg => !known.has(msg.id)).concat(this.messages);
+            this.olderCursor = page.nextCursor;
+
+            const container = document.getElementById('chatMessages');
+            const previousHeight = container.scrollHeight;
+            this.renderMessages();
+            container.scrollTop = container.scrollHeight - previousHeight;
+        } catch (error) {
+            console.error('Error loading older messages:', error);
+        } finally {
+            this.loadingOlder = false;
+        }
+    },
+
     // Send a new message
     async handleSendMessage(e) {
         e.preventDefault();
@@ -77,64 +191,57 @@ const Chat = {
                 content: content
             });
 
-            // Add message to local array
-            this.messages.push(message);
-            this.lastTimestamp = message.timestamp;
-
-            // Clear input and render
+            // Clear input and add message (the push copy is ignored if it arrives first)
             input.value = '';
-            this.renderMessages();
-            this.scrollToBottom();
+            this.addMessages([message]);
         } catch (error) {
             console.error('Error sending message:', error);
             App.showToast('Failed to send message', 'error');
         }
     },
 
-    // Poll for new messages
+    // Long-poll for new messages - the server holds each request until a message arrives or the wait ends
     startPolling() {
-        // Clear any existing interval
-        if (this.pollInterval) {
-            clearInterval(this.pollInterval);
-        }
+        if (this.polling) return;
+        this.polling = true;
+        this.pollLoop(++this.pollGeneration);
+    },
 
-        // Poll every 3 seconds
-        this.pollInterval = setInterval(async () => {
-            await this.checkNewMessages();
-        }, 3000);
+    async pollLoop(generation) {
+        while (this.polling && this.pollGeneration === generation) {
+            const ok = await this.checkNewMessages(this.longPollWaitSeconds);
+            if (!ok) {
+                // Back off after an error rather than retrying immediately
+                await new Promise(resolve => setTimeout(resolve, 3000));
+            }
+        }
     },
 
-    // Stop polling
+    // Stop polling (an in-flight request is left to finish; its messages are deduplicated)
     stopPolling() {
-        if (this.pollInterval) {
-            clearInterval(this.pollInterval);
-            this.pollInterval = null;
-        }
+        this.polling = false;
+        this.pollGeneration++;
     },
 
-    // Check for new messages since last timestamp
-    async checkNewMessages() {
-        if (!this.currentSessionId) return;
+    // Check for new messages since last timestamp, optionally waiting on the server for them
+    async checkNewMessages(wait) {
+        if (!this.currentSessionId) return false;
 
         try {
+            const waitParam = wait ? `&wait=${wait}` : '';
             const newMessages = await API.get(
-                `/sessions/${this.currentSessionId}/chat?since=${this.lastTimestamp}`
+                `/sessions/${this.currentSessionId}/chat?since=${this.lastTimestamp}${waitParam}`
             );
 
-            if (newMessages.length > 0) {
-                // Add new messages to array
-                this.messages.push(...newMessages);
-                this.lastTimestamp = newMessages[newMessages.length - 1].timestamp;
-
-                // Re-render and scroll
-                this.renderMessages();
-                this.scrollToBottom();
-            }
+            // Add new messages, re-render and scroll
+            this.addMessages(newMessages);
 
             this.updateStatus('Connected');
+            return true;
         } catch (error) {
             console.error('Error checking messages:', error);
             this.updateStatus('Connection error');
+            return false;
         }
     },
 
@@ -395,14 +502,9 @@ const Chat = {
                 content: content
             });
 
-            // Add message to local array
-            this.messages.push(message);
-            this.lastTimestamp = message.timestamp;
-
             // Clear and close code editor
             this.closeCodeEditor();
-            this.renderMessages();
-            this.scrollToBottom();
+            this.addMessages([message]);
         } catch (error) {
             console.error('Error sending code block:', error);
             App.showToast('Failed to send code block', 'error');
@@ -412,9 +514,11 @@ const Chat = {
     // Clean up when leaving chat
     cleanup() {
         this.stopPolling();
+        this.disconnectSocket();
         this.currentSessionId = null;
         this.messages = [];
         this.lastTimestamp = 0;
+        this.olderCursor = null;
     }
 };
 
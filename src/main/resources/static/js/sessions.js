@@ -146,20 +146,9 @@ const Sessions = {
         }
 
         try {
-            // Fetch user details and ratings for each request
-            const userPromises = requestUserIds.map(async userId => {
-                try {
-                    const [user, rating] = await Promise.all([
-                        API.get(`/users/${userId}`),
-                        API.get(`/users/${userId}/rating`)
-                    ]);
-                    return { ...user, rating: rating.averageRating, ratingCount: rating.ratingCount };
-                } catch (error) {
-                    console.error(`Failed to fetch user ${userId}:`, error);
-                    return null;
-                }
-            });
-            const users = (await Promise.all(userPromises)).filter(user => user !== null);
+            // Fetch user details and ratings for every request in one call
+            const { users: found } = await API.post('/users/batch', { ids: requestUserIds });
+            const users = found.map(user => ({ ...user, rating: user.averageRating }));
 
             if (users.length === 0) {
                 container.innerHTML = '<p>No valid pending requests</p>';
@@ -537,17 +526,16 @@ const Sessions = {
 
         countEl.textContent = participantIds.length;
 
-        // Fetch user info for all participants
-        const participantPromises = participantIds.map(async userId => {
-            try {
-                const user = await API.get(`/users/${userId}`);
-                return { ...user, id: userId };
-            } catch (error) {
-                return { id: userId, name: 'Unknown User' };
-            }
-        });
+        // Fetch user info for all participants in one call
+        let usersById = {};
+        try {
+            const { users } = await API.post('/users/batch', { ids: participantIds });
+            usersById = Object.fromEntries(users.map(user => [user.id, user]));
+        } catch (error) {
+            console.error('Failed to fetch participants:', error);
+        }
 
-        const participants = await Promise.all(participantPromises);
+        const participants = participantIds.map(userId => usersById[userId] || { id: userId, name: 'Unknown User' });
 
         listContainer.innerHTML = participants.map(user => {
             const isYou = user.id === currentUserId;
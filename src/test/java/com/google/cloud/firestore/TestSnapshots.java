@@ -0,0 +1,36 @@
+package com.google.cloud.firestore;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.spi.v1.FirestoreRpc;
+import com.google.firestore.v1.Document;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Builds real DocumentSnapshots from wire-format documents, so tests decode values the way the
+ * SDK does instead of answering from a mock. Lives in the SDK package for the package-private factory.
+ */
+public final class TestSnapshots {
+
+    public static final String PROJECT_ID = "test-project";
+
+    private static final FirestoreImpl FIRESTORE = new FirestoreImpl(
+            FirestoreOptions.newBuilder()
+                    .setProjectId(PROJECT_ID)
+                    .setCredentials(NoCredentials.getInstance())
+                    .build(),
+            mock(FirestoreRpc.class));
+
+    private TestSnapshots() {
+    }
+
+    public static DocumentSnapshot fromDocument(String collection, String id, Document.Builder document) {
+        String name = String.format("projects/%s/databases/(default)/documents/%s/%s", PROJECT_ID, collection, id);
+        Timestamp now = Timestamp.now();
+        document.setName(name)
+                .setCreateTime(now.toProto())
+                .setUpdateTime(now.toProto());
+        return DocumentSnapshot.fromDocument(FIRESTORE, now, document.build());
+    }
+}
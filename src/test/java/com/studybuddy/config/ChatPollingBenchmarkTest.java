@@ -0,0 +1,128 @@
+package com.studybuddy.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Chat polling throughput on Tomcat's default 200 platform threads versus one virtual thread per
+ * request behind the Firestore bulkhead. Each poll makes a few Firestore round trips, simulated by
+ * sleeping while holding a permit, the way the interceptor holds one per RPC.
+ */
+@Tag("benchmark")
+class ChatPollingBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatPollingBenchmarkTest.class);
+
+    private static final int POLLS = 20_000;
+    private static final int RPCS_PER_POLL = 3;
+    private static final long RPC_MILLIS = 15;
+    private static final int PLATFORM_THREADS = 200;
+    private static final int BULKHEAD_PERMITS = 1_000;
+
+    @Test
+    void virtualThreadsOutpaceThePlatformPool() throws Exception {
+        ExecutorService virtualThreads = virtualThreadExecutor();
+        assumeTrue(virtualThreads != null, "virtual threads need Java 21 (-Pjava21)");
+
+        Result platform = run("platform", Executors.newFixedThreadPool(PLATFORM_THREADS), false);
+        Result virtual = run("virtual", virtualThreads, true);
+
+        assertThat(virtual.rejected).isZero();
+        assertThat(virtual.peakInFlight).isLessThanOrEqualTo(BULKHEAD_PERMITS);
+        assertThat(virtual.pollsPerSecond).isGreaterThan(platform.pollsPerSecond);
+    }
+
+    private static Runnable asRequest(Runnable handler) {
+        return () -> {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+            try {
+                handler.run();
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        };
+    }
+
+    private Result run(String name, ExecutorService executor, boolean withBulkhead) throws Exception {
+        FirestoreBulkhead bulkhead = FirestoreBulkheadInterceptorTest.bulkhead(
+                new SimpleMeterRegistry(), BULKHEAD_PERMITS, 5_000);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        long[] latencies = new long[POLLS];
+
+        long start = System.nanoTime();
+        List<Future<?>> polls = new ArrayList<>(POLLS);
+        for (int i = 0; i < POLLS; i++) {
+            int poll = i;
+            long queuedAt = System.nanoTime();
+            // Polls run as servlet requests, which may wait for a bulkhead permit
+            polls.add(executor.submit(asRequest(() -> {
+                for (int rpc = 0; rpc < RPCS_PER_POLL; rpc++) {
+                    if (withBulkhead && !bulkhead.tryAcquire()) {
+                        rejected.incrementAndGet();
+                        return;
+                    }
+                    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(RPC_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } finally {
+                        inFlight.decrementAndGet();
+                        if (withBulkhead) {
+                            bulkhead.release();
+                        }
+                    }
+                }
+                latencies[poll] = System.nanoTime() - queuedAt;
+            })));
+        }
+        for (Future<?> poll : polls) {
+            poll.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        Arrays.sort(latencies);
+        Result result = new Result(POLLS * 1e9 / elapsed, peakInFlight.get(), rejected.get());
+        logger.info("{}: {} polls/s, p50 {} ms, p99 {} ms, peak {} RPCs in flight, {} rejected",
+                name, Math.round(result.pollsPerSecond),
+                TimeUnit.NANOSECONDS.toMillis(latencies[POLLS / 2]),
+                TimeUnit.NANOSECONDS.toMillis(latencies[POLLS * 99 / 100]),
+                result.peakInFlight, result.rejected);
+        return result;
+    }
+
+    // Looked up reflectively so the suite still compiles for the Java 17 baseline
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private record Result(double pollsPerSecond, int peakInFlight, int rejected) {
+    }
+}
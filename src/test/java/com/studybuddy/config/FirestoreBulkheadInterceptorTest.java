@@ -0,0 +1,242 @@
+package com.studybuddy.config;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FirestoreBulkheadInterceptorTest {
+
+    private FirestoreBulkhead bulkhead;
+    private SimpleMeterRegistry meterRegistry;
+    private FakeChannel channel;
+    private FirestoreBulkheadInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = bulkhead(meterRegistry, 2, 0);
+        channel = new FakeChannel();
+        interceptor = new FirestoreBulkheadInterceptor(bulkhead);
+    }
+
+    @Test
+    void holdsPermitUntilCallCloses() {
+        ClientCall<String, String> first = start("RunQuery", new AtomicReference<>());
+        start("BatchGetDocuments", new AtomicReference<>());
+
+        AtomicReference<Status> rejected = new AtomicReference<>();
+        start("Commit", rejected);
+        assertThat(rejected.get().getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+        assertThat(channel.started).hasSize(2);
+        assertThat(meterRegistry.counter("firestore.bulkhead.rejected").count()).isEqualTo(1);
+
+        channel.started.get(0).close(Status.OK);
+        // Closing twice (e.g. cancel racing the server's close) must not hand back a second permit
+        channel.started.get(0).close(Status.CANCELLED);
+        first.cancel("done", null);
+
+        AtomicReference<Status> retried = new AtomicReference<>();
+        start("Commit", retried);
+        assertThat(retried.get()).isNull();
+        assertThat(channel.started).hasSize(3);
+
+        AtomicReference<Status> overLimit = new AtomicReference<>();
+        start("Commit", overLimit);
+        assertThat(overLimit.get().getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+    }
+
+    @Test
+    void listenerStreamsDoNotTakePermits() {
+        for (int i = 0; i < 5; i++) {
+            start("Listen", new AtomicReference<>());
+        }
+        start("Write", new AtomicReference<>());
+
+        AtomicReference<Status> status = new AtomicReference<>();
+        start("RunQuery", status);
+        assertThat(status.get()).isNull();
+        assertThat(channel.started).hasSize(7);
+    }
+
+    @Test
+    void rejectedCallIgnoresFurtherOperations() {
+        start("RunQuery", new AtomicReference<>());
+        start("RunQuery", new AtomicReference<>());
+
+        ClientCall<String, String> rejected = start("RunQuery", new AtomicReference<>());
+        rejected.request(1);
+        rejected.sendMessage("query");
+        rejected.halfClose();
+        rejected.cancel("gave up", null);
+
+        assertThat(channel.calls).hasSize(3);
+        assertThat(channel.calls.get(2).operations).isEmpty();
+    }
+
+    @Test
+    void disabledBulkheadPassesCallsThrough() {
+        ReflectionTestUtils.setField(bulkhead, "enabled", false);
+        for (int i = 0; i < 5; i++) {
+            AtomicReference<Status> status = new AtomicReference<>();
+            start("RunQuery", status);
+            assertThat(status.get()).isNull();
+        }
+        assertThat(channel.started).hasSize(5);
+    }
+
+    @Test
+    void onlyRequestThreadsWaitForAPermit() throws Exception {
+        bulkhead = bulkhead(meterRegistry, 1, 5_000);
+        interceptor = new FirestoreBulkheadInterceptor(bulkhead);
+        start("RunQuery", new AtomicReference<>());
+
+        // Off a request thread (e.g. a gRPC callback) a full bulkhead fails without waiting
+        long started = System.nanoTime();
+        AtomicReference<Status> callback = new AtomicReference<>();
+        start("RunQuery", callback);
+        assertThat(callback.get().getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+        assertThat(System.nanoTime() - started).isLessThan(TimeUnit.SECONDS.toNanos(1));
+
+        // A request thread waits for the permit to come back
+        AtomicReference<Status> request = new AtomicReference<>();
+        Thread requestThread = new Thread(() -> {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+            try {
+                start("RunQuery", request);
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        });
+        requestThread.start();
+        while (requestThread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        channel.started.get(0).close(Status.OK);
+        requestThread.join();
+
+        assertThat(request.get()).isNull();
+        assertThat(channel.started).hasSize(2);
+    }
+
+    static FirestoreBulkhead bulkhead(SimpleMeterRegistry meterRegistry, int maxConcurrent, long maxWaitMs) {
+        FirestoreBulkhead bulkhead = new FirestoreBulkhead();
+        ReflectionTestUtils.setField(bulkhead, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(bulkhead, "enabled", true);
+        ReflectionTestUtils.setField(bulkhead, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(bulkhead, "maxWaitMs", maxWaitMs);
+        bulkhead.init();
+        return bulkhead;
+    }
+
+    private ClientCall<String, String> start(String method, AtomicReference<Status> closedWith) {
+        ClientCall<String, String> call = interceptor.interceptCall(method(method), CallOptions.DEFAULT, channel);
+        call.start(new ClientCall.Listener<>() {
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                closedWith.set(status);
+            }
+        }, new Metadata());
+        return call;
+    }
+
+    private static MethodDescriptor<String, String> method(String name) {
+        return MethodDescriptor.<String, String>newBuilder()
+                .setType(MethodDescriptor.MethodType.UNARY)
+                .setFullMethodName("google.firestore.v1.Firestore/" + name)
+                .setRequestMarshaller(StringMarshaller.INSTANCE)
+                .setResponseMarshaller(StringMarshaller.INSTANCE)
+                .build();
+    }
+
+    private static class FakeChannel extends Channel {
+        private final List<FakeCall<?, ?>> calls = new ArrayList<>();
+        private final List<FakeCall<?, ?>> started = new ArrayList<>();
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+                                                             CallOptions callOptions) {
+            FakeCall<ReqT, RespT> call = new FakeCall<>(this);
+            calls.add(call);
+            return call;
+        }
+
+        @Override
+        public String authority() {
+            return "firestore.test";
+        }
+    }
+
+    private static class FakeCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+        private final FakeChannel channel;
+        private final List<String> operations = new ArrayList<>();
+        private Listener<RespT> listener;
+
+        FakeCall(FakeChannel channel) {
+            this.channel = channel;
+        }
+
+        void close(Status status) {
+            listener.onClose(status, new Metadata());
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            listener = responseListener;
+            operations.add("start");
+            channel.started.add(this);
+        }
+
+        @Override
+        public void request(int numMessages) {
+            operations.add("request");
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            operations.add("cancel");
+        }
+
+        @Override
+        public void halfClose() {
+            operations.add("halfClose");
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            operations.add("sendMessage");
+        }
+    }
+
+    private enum StringMarshaller implements MethodDescriptor.Marshaller<String> {
+        INSTANCE;
+
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes());
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
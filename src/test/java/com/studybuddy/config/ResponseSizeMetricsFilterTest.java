@@ -0,0 +1,72 @@
+package com.studybuddy.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseSizeMetricsFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ResponseSizeMetricsFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new ResponseSizeMetricsFilter();
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    void tagsListResponsesWithTheRequestedView() throws Exception {
+        get("/api/sessions", "SUMMARY", 10);
+        get("/api/sessions/joined", null, 30);
+
+        assertThat(summary("summary").totalAmount()).isEqualTo(10);
+        assertThat(summary("full").totalAmount()).isEqualTo(30);
+    }
+
+    @Test
+    void unknownViewsFallBackToFull() throws Exception {
+        get("/api/sessions", "anything-at-all", 5);
+        get("/api/sessions/my-sessions", "another-one", 5);
+
+        assertThat(meterRegistry.find("sessions.response.bytes").summaries()).hasSize(1);
+        assertThat(summary("full").count()).isEqualTo(2);
+    }
+
+    @Test
+    void detailResponsesAreAlwaysFull() throws Exception {
+        get("/api/sessions/abc123", "summary", 20);
+
+        assertThat(meterRegistry.find("sessions.response.bytes").summaries()).hasSize(1);
+        assertThat(summary("full").totalAmount()).isEqualTo(20);
+    }
+
+    @Test
+    void skipsChatAndOtherSubResources() throws Exception {
+        get("/api/sessions/abc123/chat", null, 20);
+        get("/api/sessions/abc123/chat/stream", null, 20);
+
+        assertThat(meterRegistry.find("sessions.response.bytes").summaries()).isEmpty();
+    }
+
+    private void get(String path, String view, int bytes) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (view != null) {
+            request.setParameter("view", view);
+        }
+        FilterChain chain = (req, res) -> res.getOutputStream().write(new byte[bytes]);
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+    }
+
+    private DistributionSummary summary(String view) {
+        return meterRegistry.get("sessions.response.bytes").tag("view", view).summary();
+    }
+}
@@ -0,0 +1,135 @@
+package com.studybuddy.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.studybuddy.dto.MessageResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Path file;
+    private MessageJournal journal;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = dir.resolve("chat-journal.log");
+        journal = new MessageJournal(file.toString(), objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        journal.close();
+    }
+
+    @Test
+    void concurrentWritersAreAllDurable() throws Exception {
+        AtomicLong seq = new AtomicLong();
+        ExecutorService writers = Executors.newFixedThreadPool(16);
+        List<Future<?>> writes = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            writes.add(writers.submit(() -> {
+                MessageJournal.Record record;
+                long ticket;
+                // Callers hand out sequence numbers and write under one lock, as the repository does
+                synchronized (journal) {
+                    record = save(seq.incrementAndGet());
+                    ticket = journal.write(record);
+                }
+                journal.sync(ticket);
+                return null;
+            }));
+        }
+        for (Future<?> write : writes) {
+            write.get();
+        }
+        writers.shutdown();
+
+        assertThat(reopen().unflushed()).extracting(MessageJournal.Record::getSeq)
+                .containsExactlyElementsOf(range(1, 1_000));
+    }
+
+    @Test
+    void flushedMarkersHideEarlierRecords() throws Exception {
+        for (long seq = 1; seq <= 5; seq++) {
+            journal.sync(journal.write(save(seq)));
+        }
+        journal.markFlushed(3);
+
+        assertThat(journal.unflushed()).extracting(MessageJournal.Record::getSeq).containsExactly(4L, 5L);
+    }
+
+    @Test
+    void rewriteKeepsOnlyPendingRecords() throws Exception {
+        List<MessageJournal.Record> records = new ArrayList<>();
+        for (long seq = 1; seq <= 200; seq++) {
+            records.add(save(seq));
+            journal.sync(journal.write(records.get(records.size() - 1)));
+        }
+        journal.markFlushed(190);
+        long before = Files.size(file);
+        assertThat(journal.needsRewrite(before / 2)).isTrue();
+
+        journal.rewrite(records.subList(190, 200));
+        // Writes after the rewrite land in the new file
+        journal.sync(journal.write(save(201)));
+
+        assertThat(Files.size(file)).isLessThan(before / 10);
+        assertThat(reopen().unflushed()).extracting(MessageJournal.Record::getSeq)
+                .containsExactlyElementsOf(range(191, 201));
+    }
+
+    @Test
+    void backlogLargerThanTheLimitIsNotRewrittenOnEveryFlush() throws Exception {
+        List<MessageJournal.Record> records = new ArrayList<>();
+        for (long seq = 1; seq <= 100; seq++) {
+            records.add(save(seq));
+            journal.write(records.get(records.size() - 1));
+        }
+        journal.rewrite(records);
+        long rewritten = Files.size(file);
+
+        journal.markFlushed(1);
+        assertThat(journal.needsRewrite(rewritten / 4)).isFalse();
+
+        for (long seq = 101; seq <= 200; seq++) {
+            journal.write(save(seq));
+        }
+        assertThat(journal.needsRewrite(rewritten / 4)).isTrue();
+    }
+
+    private MessageJournal reopen() throws Exception {
+        journal.close();
+        journal = new MessageJournal(file.toString(), objectMapper);
+        return journal;
+    }
+
+    private static MessageJournal.Record save(long seq) {
+        MessageResponse message = new MessageResponse("m" + seq, "s1", "u1", "Alice", "hello " + seq, seq);
+        return new MessageJournal.Record(seq, MessageJournal.SAVE, message, "s1", "m" + seq);
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> values = new ArrayList<>();
+        for (long value = from; value <= to; value++) {
+            values.add(value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,169 @@
+package com.studybuddy.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.WriteBatch;
+import com.studybuddy.dto.MessageResponse;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WriteBehindMessageRepositoryTest {
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger ids = new AtomicInteger();
+    // Contents of each committed batch; a batch holding a "poison" message is rejected
+    private final List<List<String>> committed = new ArrayList<>();
+    private Status commitFailure;
+    private Path deadLetters;
+    private SimpleMeterRegistry meterRegistry;
+    private WriteBehindMessageRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FirestoreMessageRepository firestoreRepository = mock(FirestoreMessageRepository.class);
+        CollectionReference messages = mock(CollectionReference.class);
+        when(firestoreRepository.messages(anyString())).thenReturn(messages);
+        when(messages.document()).thenAnswer(invocation -> document("m" + ids.incrementAndGet()));
+        when(messages.document(anyString())).thenAnswer(invocation -> document(invocation.getArgument(0)));
+        when(firestoreRepository.batch()).thenAnswer(invocation -> batch());
+        when(firestoreRepository.findById(anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        FirestoreMessageArchive archive = mock(FirestoreMessageArchive.class);
+        when(archive.remove(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+
+        deadLetters = dir.resolve("chat-journal.dead");
+        meterRegistry = new SimpleMeterRegistry();
+        repository = new WriteBehindMessageRepository();
+        ReflectionTestUtils.setField(repository, "firestoreRepository", firestoreRepository);
+        ReflectionTestUtils.setField(repository, "archive", archive);
+        ReflectionTestUtils.setField(repository, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(repository, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(repository, "journalPath", dir.resolve("chat-journal.log").toString());
+        // Flushes are driven by the test
+        ReflectionTestUtils.setField(repository, "flushIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(repository, "batchSize", 100);
+        ReflectionTestUtils.setField(repository, "journalMaxBytes", 8_388_608L);
+        ReflectionTestUtils.setField(repository, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(repository, "deadLetterPath", deadLetters.toString());
+        repository.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        commitFailure = null;
+        repository.stop();
+    }
+
+    @Test
+    void rejectedRecordIsDeadLetteredWithoutHoldingUpTheQueue() throws Exception {
+        save("hello");
+        MessageResponse poison = save("poison");
+        save("bye");
+
+        // The whole batch is rejected, then retried one record at a time
+        assertThat(repository.flush()).isFalse();
+        assertThat(repository.flush()).isTrue();
+        for (int attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+            assertThat(repository.flush()).isFalse();
+        }
+        assertThat(repository.flush()).isTrue();
+        assertThat(repository.flush()).isTrue();
+
+        assertThat(committed).containsExactly(List.of("hello"), List.of("bye"));
+        assertThat(queueDepth()).isZero();
+        assertThat(Files.readAllLines(deadLetters)).singleElement().asString().contains(poison.getId(), "poison");
+        assertThat(meterRegistry.counter("chat.writebehind.dead.lettered").count()).isEqualTo(1);
+        assertThat(repository.findById("s1", poison.getId()).join()).isNull();
+    }
+
+    @Test
+    void transientFailuresAreRetriedWithoutDeadLettering() {
+        save("hello");
+        commitFailure = Status.UNAVAILABLE;
+
+        for (int attempt = 0; attempt < 10 * MAX_ATTEMPTS; attempt++) {
+            assertThat(repository.flush()).isFalse();
+        }
+        commitFailure = null;
+        assertThat(repository.flush()).isTrue();
+
+        assertThat(committed).containsExactly(List.of("hello"));
+        assertThat(Files.exists(deadLetters)).isFalse();
+    }
+
+    @Test
+    void laterWriteToTheSameMessageStaysPendingAfterTheEarlierOneFlushes() {
+        MessageResponse message = save("hello");
+        repository.delete("s1", message.getId()).join();
+
+        // A save and a delete of one message never share a batch
+        assertThat(repository.flush()).isTrue();
+        assertThat(committed).containsExactly(List.of("hello"));
+
+        assertThat(queueDepth()).isEqualTo(1);
+        assertThat(repository.findById("s1", message.getId()).join()).isNull();
+    }
+
+    private MessageResponse save(String content) {
+        return repository.save(new MessageResponse(null, "s1", "u1", "Alice", content, System.nanoTime())).join();
+    }
+
+    private int queueDepth() {
+        return (int) meterRegistry.get("chat.writebehind.queue.depth").gauge().value();
+    }
+
+    private static DocumentReference document(String id) {
+        DocumentReference document = mock(DocumentReference.class);
+        when(document.getId()).thenReturn(id);
+        return document;
+    }
+
+    @SuppressWarnings("unchecked")
+    private WriteBatch batch() {
+        List<String> contents = new ArrayList<>();
+        WriteBatch batch = mock(WriteBatch.class);
+        when(batch.set(any(DocumentReference.class), anyMap())).thenAnswer(invocation -> {
+            contents.add((String) ((Map<String, Object>) invocation.getArgument(1)).get("content"));
+            return batch;
+        });
+        when(batch.commit()).thenAnswer(invocation -> {
+            if (commitFailure != null) {
+                return ApiFutures.immediateFailedFuture(commitFailure.asRuntimeException());
+            }
+            if (contents.contains("poison")) {
+                return ApiFutures.immediateFailedFuture(Status.INVALID_ARGUMENT
+                        .withDescription("Invalid document").asRuntimeException());
+            }
+            committed.add(contents);
+            return ApiFutures.immediateFuture(List.of());
+        });
+        return batch;
+    }
+}
@@ -0,0 +1,352 @@
+package com.studybuddy.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Transaction;
+import com.studybuddy.dto.RatingRequest;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Concurrent rateUser calls against an in-memory Firestore whose transactions commit optimistically:
+ * a transaction whose reads changed before it committed is retried, up to Firestore's five attempts.
+ * A few tutors are rated in a burst, so they grow rating shards part way through. Afterwards each
+ * tutor's user document plus shards must add up to exactly the ratings stored for them.
+ */
+@Tag("benchmark")
+class RatingContentionLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RatingContentionLoadTest.class);
+
+    private static final int THREADS = 32;
+    private static final int RATINGS = 4_000;
+    private static final int RATERS = 500;
+    private static final int TUTORS = 3;
+    private static final int MAX_ATTEMPTS = 5;
+    // Time each transactional read takes, leaving room for other transactions to commit in between
+    private static final long READ_MICROS = 500;
+
+    private final FakeFirestore store = new FakeFirestore();
+
+    @Test
+    void aggregatesStayExactAcrossShardsUnderContention() throws Exception {
+        for (int tutor = 0; tutor < TUTORS; tutor++) {
+            store.put("users/tutor" + tutor, Map.of(RatingService.RATING_SUM_FIELD, 0L,
+                    RatingService.RATING_COUNT_FIELD, 0L));
+        }
+        RatingService ratingService = ratingService();
+
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService requestThreads = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        List<Future<?>> ratings = new ArrayList<>(RATINGS);
+        for (int i = 0; i < RATINGS; i++) {
+            ratings.add(requestThreads.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                // Raters come back to change their score, which only moves the sum
+                String rater = "rater" + random.nextInt(RATERS);
+                String tutor = "tutor" + random.nextInt(TUTORS);
+                try {
+                    ratingService.rateUser(rater, tutor, new RatingRequest(1 + random.nextInt(5), null));
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> rating : ratings) {
+            rating.get(1, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+        requestThreads.shutdown();
+
+        logger.info("{} ratings in {} ms on {} threads: {} retried commits, {} gave up after {} attempts",
+                RATINGS, TimeUnit.NANOSECONDS.toMillis(elapsed), THREADS, store.retries.get(), failed.get(),
+                MAX_ATTEMPTS);
+
+        for (int tutor = 0; tutor < TUTORS; tutor++) {
+            String userId = "tutor" + tutor;
+            long[] expected = store.storedRatings(userId);
+            long[] actual = store.aggregates(userId);
+            logger.info("{}: {} ratings summing to {}, {} shards", userId, expected[1], expected[0],
+                    store.shardCount(userId));
+
+            assertThat(actual).as("sum and count for %s", userId).containsExactly(expected);
+            assertThat(store.shardCount(userId)).isPositive();
+        }
+    }
+
+    private RatingService ratingService() {
+        Firestore firestore = mock(Firestore.class, withSettings().stubOnly().defaultAnswer(store::firestore));
+
+        RatingShards real = new RatingShards();
+        // Shard increments as plain deltas the fake store can apply
+        RatingShards ratingShards = mock(RatingShards.class, withSettings().stubOnly()
+                .spiedInstance(real)
+                .defaultAnswer(invocation -> invocation.getMethod().getName().equals("increment")
+                        ? Map.of(RatingService.RATING_SUM_FIELD, new Delta(invocation.getArgument(0)),
+                        RatingService.RATING_COUNT_FIELD, new Delta(invocation.getArgument(1)))
+                        : CALLS_REAL_METHODS.answer(invocation)));
+        ReflectionTestUtils.setField(ratingShards, "firestore", firestore);
+        ReflectionTestUtils.setField(ratingShards, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ratingShards, "maxShards", 16);
+        ReflectionTestUtils.setField(ratingShards, "writesPerShard", 1.0);
+        ReflectionTestUtils.setField(ratingShards, "windowSeconds", 10L);
+        ReflectionTestUtils.setField(ratingShards, "idleMinutes", 30L);
+        ratingShards.registerMetrics();
+
+        RatingService ratingService = new RatingService();
+        ReflectionTestUtils.setField(ratingService, "firestore", firestore);
+        ReflectionTestUtils.setField(ratingService, "ratingShards", ratingShards);
+        ReflectionTestUtils.setField(ratingService, "userStatsCache",
+                mock(UserStatsCache.class, withSettings().stubOnly()));
+        ReflectionTestUtils.setField(ratingService, "dualRead", false);
+        return ratingService;
+    }
+
+    /**
+     * What FieldValue.increment stands for, in a form the fake can read back
+     */
+    private record Delta(long amount) {
+    }
+
+    /**
+     * Documents by path with a version each. Mocks answer from it through default answers rather than
+     * stubbing, so any number of threads can use them at once.
+     */
+    private static class FakeFirestore {
+        private final Map<String, Map<String, Object>> documents = new HashMap<>();
+        private final Map<String, Long> versions = new HashMap<>();
+        private final Map<String, DocumentReference> refs = new ConcurrentHashMap<>();
+        private final Map<String, CollectionReference> collections = new ConcurrentHashMap<>();
+        private final AtomicInteger retries = new AtomicInteger();
+
+        synchronized void put(String path, Map<String, Object> fields) {
+            documents.put(path, new HashMap<>(fields));
+            versions.merge(path, 1L, Long::sum);
+        }
+
+        Object firestore(InvocationOnMock invocation) throws Exception {
+            switch (invocation.getMethod().getName()) {
+                case "collection":
+                    return collection(invocation.getArgument(0));
+                case "runTransaction":
+                    return runTransaction(invocation.getArgument(0));
+                case "getAll":
+                    List<DocumentSnapshot> snapshots = new ArrayList<>();
+                    for (Object ref : invocation.getArguments()) {
+                        snapshots.add(snapshot(((DocumentReference) ref).getPath()));
+                    }
+                    return ApiFutures.immediateFuture(snapshots);
+                default:
+                    return null;
+            }
+        }
+
+        private Object runTransaction(Transaction.Function<?> function) throws Exception {
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                PendingTransaction pending = new PendingTransaction();
+                Transaction transaction = mock(Transaction.class,
+                        withSettings().stubOnly().defaultAnswer(pending::answer));
+                Object result;
+                try {
+                    result = function.updateCallback(transaction);
+                } catch (Exception e) {
+                    return ApiFutures.immediateFailedFuture(e);
+                }
+                if (commit(pending)) {
+                    return ApiFutures.immediateFuture(result);
+                }
+                retries.incrementAndGet();
+            }
+            return ApiFutures.immediateFailedFuture(Status.ABORTED
+                    .withDescription("Too much contention on these documents").asRuntimeException());
+        }
+
+        private synchronized boolean commit(PendingTransaction pending) {
+            for (Map.Entry<String, Long> read : pending.readVersions.entrySet()) {
+                if (!versions.getOrDefault(read.getKey(), 0L).equals(read.getValue())) {
+                    return false;
+                }
+            }
+            pending.writes.forEach((path, write) -> {
+                Map<String, Object> fields = write.merge && documents.containsKey(path)
+                        ? documents.get(path) : new HashMap<>();
+                write.fields.forEach((field, value) -> {
+                    if (value instanceof Delta) {
+                        Object current = fields.get(field);
+                        long base = current instanceof Number ? ((Number) current).longValue() : 0;
+                        fields.put(field, base + ((Delta) value).amount());
+                    } else {
+                        fields.put(field, value);
+                    }
+                });
+                documents.put(path, fields);
+                versions.merge(path, 1L, Long::sum);
+            });
+            return true;
+        }
+
+        private synchronized long version(String path) {
+            return versions.getOrDefault(path, 0L);
+        }
+
+        synchronized DocumentSnapshot snapshot(String path) {
+            Map<String, Object> fields = documents.containsKey(path) ? new HashMap<>(documents.get(path)) : null;
+            DocumentReference ref = ref(path);
+            return mock(DocumentSnapshot.class, withSettings().stubOnly().defaultAnswer(invocation -> {
+                switch (invocation.getMethod().getName()) {
+                    case "exists":
+                        return fields != null;
+                    case "getId":
+                        return ref.getId();
+                    case "getReference":
+                        return ref;
+                    case "getLong":
+                        Object value = fields != null ? fields.get(invocation.<String>getArgument(0)) : null;
+                        return value instanceof Number ? ((Number) value).longValue() : null;
+                    default:
+                        return null;
+                }
+            }));
+        }
+
+        DocumentReference ref(String path) {
+            return refs.computeIfAbsent(path, p -> mock(DocumentReference.class,
+                    withSettings().stubOnly().defaultAnswer(invocation -> {
+                        switch (invocation.getMethod().getName()) {
+                            case "getId":
+                                return p.substring(p.lastIndexOf('/') + 1);
+                            case "getPath":
+                                return p;
+                            case "getParent":
+                                return collection(p.substring(0, p.lastIndexOf('/')));
+                            case "collection":
+                                return collection(p + "/" + invocation.getArgument(0));
+                            case "get":
+                                return ApiFutures.immediateFuture(snapshot(p));
+                            default:
+                                return null;
+                        }
+                    })));
+        }
+
+        CollectionReference collection(String path) {
+            return collections.computeIfAbsent(path, p -> mock(CollectionReference.class,
+                    withSettings().stubOnly().defaultAnswer(invocation -> {
+                        switch (invocation.getMethod().getName()) {
+                            case "getId":
+                                return p.substring(p.lastIndexOf('/') + 1);
+                            case "document":
+                                return ref(p + "/" + invocation.getArgument(0));
+                            case "getParent":
+                                return ref(p.substring(0, p.lastIndexOf('/')));
+                            default:
+                                return null;
+                        }
+                    })));
+        }
+
+        /**
+         * Score sum and count of the rating documents for the user - what the aggregates must match
+         */
+        synchronized long[] storedRatings(String userId) {
+            long[] totals = new long[2];
+            documents.forEach((path, fields) -> {
+                if (path.startsWith("ratings/") && userId.equals(fields.get("toUserId"))) {
+                    totals[0] += ((Number) fields.get("score")).longValue();
+                    totals[1]++;
+                }
+            });
+            return totals;
+        }
+
+        /**
+         * The user document's aggregates plus every shard's
+         */
+        synchronized long[] aggregates(String userId) {
+            long[] totals = new long[2];
+            String userPath = "users/" + userId;
+            String shardPrefix = userPath + "/ratingShards/";
+            documents.forEach((path, fields) -> {
+                if (path.equals(userPath) || path.startsWith(shardPrefix)) {
+                    totals[0] += longValue(fields.get(RatingService.RATING_SUM_FIELD));
+                    totals[1] += longValue(fields.get(RatingService.RATING_COUNT_FIELD));
+                }
+            });
+            return totals;
+        }
+
+        synchronized long shardCount(String userId) {
+            return longValue(documents.get("users/" + userId).get(RatingShards.SHARD_COUNT_FIELD));
+        }
+
+        private static long longValue(Object value) {
+            return value instanceof Number ? ((Number) value).longValue() : 0;
+        }
+
+        /**
+         * Reads and buffered writes of one transaction attempt
+         */
+        private class PendingTransaction {
+            private final Map<String, Long> readVersions = new HashMap<>();
+            private final Map<String, Write> writes = new LinkedHashMap<>();
+
+            @SuppressWarnings("unchecked")
+            Object answer(InvocationOnMock invocation) throws Exception {
+                Object[] args = invocation.getArguments();
+                switch (invocation.getMethod().getName()) {
+                    case "get":
+                        String path = ((DocumentReference) args[0]).getPath();
+                        long version = version(path);
+                        DocumentSnapshot snapshot = snapshot(path);
+                        TimeUnit.MICROSECONDS.sleep(READ_MICROS);
+                        // A version that moved between the two lookups fails validation, as it should
+                        readVersions.putIfAbsent(path, version);
+                        return ApiFutures.immediateFuture(snapshot);
+                    case "set":
+                        // set(ref, fields) replaces; the three-argument form is only used with merge()
+                        writes.put(((DocumentReference) args[0]).getPath(),
+                                new Write((Map<String, Object>) args[1], args.length > 2));
+                        return invocation.getMock();
+                    case "update":
+                        Map<String, Object> fields = new HashMap<>();
+                        fields.put((String) args[1], args[2]);
+                        writes.put(((DocumentReference) args[0]).getPath(), new Write(fields, true));
+                        return invocation.getMock();
+                    default:
+                        throw new UnsupportedOperationException(invocation.getMethod().getName());
+                }
+            }
+        }
+
+        private record Write(Map<String, Object> fields, boolean merge) {
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.studybuddy.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class RatingServiceTest {
+
+    private ScheduledExecutorService rpcThread;
+    private RatingService ratingService;
+
+    @BeforeEach
+    void setUp() {
+        // One callback thread, so anything that blocks on it waits forever
+        rpcThread = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        rpcThread.shutdownNow();
+    }
+
+    @Test
+    void asyncStatsReadAggregatesWithoutScanning() throws Exception {
+        ratingService = ratingService(rpcThread, 1, 5, true);
+
+        Map<String, Object> stats = ratingService.getUserRatingStatsAsync("alice").get(5, TimeUnit.SECONDS);
+
+        assertThat(stats).containsEntry("ratingCount", 3).containsEntry("averageRating", 4.0);
+    }
+
+    @Test
+    void asyncFallbackScanDoesNotBlockTheCallbackThread() throws Exception {
+        ratingService = ratingService(rpcThread, 1, 5, false);
+
+        Map<String, Object> stats = ratingService.getUserRatingStatsAsync("alice").get(5, TimeUnit.SECONDS);
+
+        assertThat(stats).containsEntry("ratingCount", 5).containsEntry("averageRating", 3.0);
+    }
+
+    @Test
+    void collectedStatsScanUsersWithoutAggregatesConcurrently() throws Exception {
+        ratingService = ratingService(rpcThread, 200, 2, false);
+        Firestore firestore = (Firestore) ReflectionTestUtils.getField(ratingService, "firestore");
+        List<DocumentSnapshot> userDocs = new ArrayList<>();
+        for (String userId : List.of("alice", "bob", "carol", "dave", "erin")) {
+            userDocs.add(firestore.collection("users").document(userId).get().get());
+        }
+
+        long start = System.nanoTime();
+        Map<String, Map<String, Object>> stats = ratingService.collectRatingStatsAsync(userDocs)
+                .get(5, TimeUnit.SECONDS);
+
+        // Five scans one after another would take a second
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(800);
+        assertThat(stats).containsOnlyKeys("alice", "bob", "carol", "dave", "erin");
+        assertThat(stats.get("carol")).containsEntry("ratingCount", 2).containsEntry("averageRating", 3.0);
+    }
+
+    @Test
+    void blockingStatsStillUseTheFallbackScan() {
+        ratingService = ratingService(rpcThread, 1, 4, false);
+
+        assertThat(ratingService.getUserRatingStats("alice")).containsEntry("ratingCount", 4);
+    }
+
+    /**
+     * A RatingService over a stubbed Firestore that answers every read after rttMillis on the
+     * given executor. Users have 3 ratings summing to 12 on their document, or - without
+     * aggregates - ratingsPerUser ratings of 3 stars each to scan.
+     */
+    static RatingService ratingService(ScheduledExecutorService rpcThreads, long rttMillis,
+                                       int ratingsPerUser, boolean withAggregates) {
+        Firestore firestore = stub(Firestore.class);
+        CollectionReference users = stub(CollectionReference.class);
+        CollectionReference ratings = stub(CollectionReference.class);
+        when(firestore.collection("users")).thenReturn(users);
+        when(firestore.collection("ratings")).thenReturn(ratings);
+
+        when(users.document(anyString())).thenAnswer(invocation -> {
+            String userId = invocation.getArgument(0);
+            DocumentSnapshot userDoc = stub(DocumentSnapshot.class);
+            when(userDoc.getId()).thenReturn(userId);
+            when(userDoc.exists()).thenReturn(true);
+            when(userDoc.getLong(RatingService.RATING_SUM_FIELD)).thenReturn(withAggregates ? 12L : null);
+            when(userDoc.getLong(RatingService.RATING_COUNT_FIELD)).thenReturn(withAggregates ? 3L : null);
+
+            DocumentReference userRef = stub(DocumentReference.class);
+            when(userRef.get()).thenAnswer(get -> reply(rpcThreads, rttMillis, userDoc));
+            return userRef;
+        });
+
+        List<QueryDocumentSnapshot> received = new ArrayList<>();
+        for (int i = 0; i < ratingsPerUser; i++) {
+            QueryDocumentSnapshot rating = stub(QueryDocumentSnapshot.class);
+            when(rating.getLong("score")).thenReturn(3L);
+            received.add(rating);
+        }
+        QuerySnapshot scan = stub(QuerySnapshot.class);
+        when(scan.getDocuments()).thenReturn(received);
+        when(scan.size()).thenReturn(received.size());
+        Query byRatedUser = stub(Query.class);
+        when(byRatedUser.get()).thenAnswer(get -> reply(rpcThreads, rttMillis, scan));
+        when(ratings.whereEqualTo(eq("toUserId"), any())).thenReturn(byRatedUser);
+
+        RatingShards ratingShards = stub(RatingShards.class);
+        when(ratingShards.totals(any())).thenReturn(CompletableFuture.completedFuture(Collections.emptyMap()));
+
+        RatingService ratingService = new RatingService();
+        ReflectionTestUtils.setField(ratingService, "firestore", firestore);
+        ReflectionTestUtils.setField(ratingService, "ratingShards", ratingShards);
+        ReflectionTestUtils.setField(ratingService, "userStatsCache", stub(UserStatsCache.class));
+        return ratingService;
+    }
+
+    private static <T> ApiFuture<T> reply(ScheduledExecutorService rpcThreads, long rttMillis, T value) {
+        SettableApiFuture<T> future = SettableApiFuture.create();
+        rpcThreads.schedule(() -> future.set(value), rttMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    // Stub-only mocks don't record invocations, so they stay cheap under load
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+}
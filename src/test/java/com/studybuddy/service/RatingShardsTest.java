@@ -0,0 +1,137 @@
+package com.studybuddy.service;
+
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.firestore.Firestore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RatingShardsTest {
+
+    private static final long WINDOW_MS = 10_000;
+    private static final double WRITES_PER_SHARD = 1;
+    private static final int MAX_SHARDS = 16;
+
+    private Firestore firestore;
+    private SimpleMeterRegistry meterRegistry;
+    private RatingShards ratingShards;
+
+    @BeforeEach
+    void setUp() {
+        firestore = mock(Firestore.class, RETURNS_DEEP_STUBS);
+        meterRegistry = new SimpleMeterRegistry();
+        ratingShards = new RatingShards();
+        ReflectionTestUtils.setField(ratingShards, "firestore", firestore);
+        ReflectionTestUtils.setField(ratingShards, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(ratingShards, "maxShards", MAX_SHARDS);
+        ReflectionTestUtils.setField(ratingShards, "writesPerShard", WRITES_PER_SHARD);
+        ReflectionTestUtils.setField(ratingShards, "windowSeconds", 10L);
+        ratingShards.registerMetrics();
+    }
+
+    @Test
+    void slowWritesNeedNoShards() {
+        RatingShards.WriteRate rate = new RatingShards.WriteRate(0);
+
+        int wanted = 0;
+        for (int i = 0; i < 10; i++) {
+            wanted = record(rate, i * 1_000L);
+        }
+
+        assertThat(wanted).isZero();
+    }
+
+    @Test
+    void burstInTheCurrentWindowCountsBeforeItEnds() {
+        RatingShards.WriteRate rate = new RatingShards.WriteRate(0);
+
+        int wanted = 0;
+        for (int i = 0; i < 25; i++) {
+            wanted = record(rate, 100L * i);
+        }
+
+        // 25 writes in a 10s window is 2.5 writes/s
+        assertThat(wanted).isEqualTo(3);
+    }
+
+    @Test
+    void lastWindowRateCarriesIntoTheNext() {
+        RatingShards.WriteRate rate = new RatingShards.WriteRate(0);
+        for (int i = 0; i < 50; i++) {
+            record(rate, 100L * i);
+        }
+
+        // First write of the next window: the last one ran at 5 writes/s
+        assertThat(record(rate, WINDOW_MS)).isEqualTo(5);
+    }
+
+    @Test
+    void quietWindowsBringTheRateDown() {
+        RatingShards.WriteRate rate = new RatingShards.WriteRate(0);
+        for (int i = 0; i < 50; i++) {
+            record(rate, 100L * i);
+        }
+
+        // One write in the ten windows since
+        assertThat(record(rate, 11 * WINDOW_MS)).isZero();
+    }
+
+    @Test
+    void shardCountIsCapped() {
+        RatingShards.WriteRate rate = new RatingShards.WriteRate(0);
+
+        int wanted = 0;
+        for (int i = 0; i < 1_000; i++) {
+            wanted = record(rate, i);
+        }
+
+        assertThat(wanted).isEqualTo(MAX_SHARDS);
+    }
+
+    @Test
+    void onlyOneGrowthRunsAtATime() {
+        SettableApiFuture<Integer> growth = SettableApiFuture.create();
+        when(firestore.<Integer>runTransaction(any())).thenReturn(growth);
+
+        for (int i = 0; i < 100; i++) {
+            ratingShards.recordWrite("tutor");
+        }
+        verify(firestore, times(1)).runTransaction(any());
+        assertThat(ratingShards.shardCount("tutor")).isZero();
+
+        growth.set(MAX_SHARDS);
+
+        assertThat(ratingShards.shardCount("tutor")).isEqualTo(MAX_SHARDS);
+        assertThat(meterRegistry.counter("ratings.shards.grown").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedGrowthCanBeRetried() {
+        SettableApiFuture<Integer> failed = SettableApiFuture.create();
+        SettableApiFuture<Integer> retried = SettableApiFuture.create();
+        when(firestore.<Integer>runTransaction(any())).thenReturn(failed, retried);
+
+        for (int i = 0; i < 20; i++) {
+            ratingShards.recordWrite("tutor");
+        }
+        failed.setException(new IllegalStateException("contention"));
+        ratingShards.recordWrite("tutor");
+        retried.set(4);
+
+        verify(firestore, times(2)).runTransaction(any());
+        assertThat(ratingShards.shardCount("tutor")).isEqualTo(4);
+    }
+
+    private static int record(RatingShards.WriteRate rate, long now) {
+        return rate.record(now, WINDOW_MS, WRITES_PER_SHARD, MAX_SHARDS);
+    }
+}
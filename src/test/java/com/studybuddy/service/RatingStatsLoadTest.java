@@ -0,0 +1,81 @@
+package com.studybuddy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rating stats requests per second at fixed request-thread counts, blocking on get() versus the
+ * composed async path, against a stubbed Firestore with a fixed round trip. Users without
+ * aggregates take two round trips (user document, then the rating scan).
+ */
+@Tag("benchmark")
+class RatingStatsLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RatingStatsLoadTest.class);
+
+    private static final int REQUESTS = 4_000;
+    private static final long RTT_MILLIS = 10;
+    private static final int[] THREAD_COUNTS = {8, 32, 200};
+
+    private ScheduledExecutorService rpcThreads;
+
+    @BeforeEach
+    void setUp() {
+        rpcThreads = Executors.newScheduledThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rpcThreads.shutdownNow();
+    }
+
+    @Test
+    void asyncPathServesMoreRequestsPerThread() throws Exception {
+        RatingService ratingService = RatingServiceTest.ratingService(rpcThreads, RTT_MILLIS, 5, false);
+
+        for (int threads : THREAD_COUNTS) {
+            double blocking = requestsPerSecond(threads, userId -> CompletableFuture.completedFuture(
+                    ratingService.getUserRatingStats(userId)));
+            double async = requestsPerSecond(threads, ratingService::getUserRatingStatsAsync);
+            logger.info("{} request threads: blocking {} req/s, async {} req/s",
+                    threads, Math.round(blocking), Math.round(async));
+
+            assertThat(async).isGreaterThan(blocking);
+        }
+    }
+
+    private double requestsPerSecond(int threads, Function<String, CompletableFuture<Map<String, Object>>> handler)
+            throws Exception {
+        ExecutorService requestThreads = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        // Like a servlet container, a request thread is free again once the handler returns
+        List<Future<CompletableFuture<Map<String, Object>>>> submitted = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            String userId = "user" + (i % 500);
+            submitted.add(requestThreads.submit(() -> handler.apply(userId)));
+        }
+        for (Future<CompletableFuture<Map<String, Object>>> request : submitted) {
+            assertThat(request.get().get(1, TimeUnit.MINUTES)).containsEntry("ratingCount", 5);
+        }
+        long elapsed = System.nanoTime() - start;
+        requestThreads.shutdown();
+        return REQUESTS * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,63 @@
+package com.studybuddy.service;
+
+import com.studybuddy.dto.MessageResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentMessageCacheTest {
+
+    private static final int CAPACITY = 3;
+
+    @Test
+    void loadStartedBeforeADeleteDoesNotBringTheMessageBack() {
+        RecentMessageCache.Buffer buffer = new RecentMessageCache.Buffer();
+        List<MessageResponse> staleRead = List.of(message(1), message(2));
+
+        buffer.remove(message(2));
+        buffer.merge(staleRead, Long.MIN_VALUE, CAPACITY);
+
+        assertThat(buffer.readSince(0)).extracting(MessageResponse::getId).containsExactly("m1");
+    }
+
+    @Test
+    void deletionsBelowTheFloorAreForgottenAfterTheGracePeriod() {
+        RecentMessageCache.Buffer buffer = new RecentMessageCache.Buffer();
+        buffer.merge(List.of(message(1), message(2), message(3)), Long.MIN_VALUE, CAPACITY);
+        buffer.remove(message(1));
+        buffer.remove(message(3));
+        // Trimming message 2 raises the floor past the first deleted message
+        buffer.add(message(4), CAPACITY);
+        buffer.add(message(5), CAPACITY);
+        buffer.add(message(6), CAPACITY);
+
+        buffer.pruneDeletions(System.currentTimeMillis() - 60_000);
+        assertThat(deletions(buffer)).containsOnlyKeys("m1", "m3");
+
+        buffer.pruneDeletions(System.currentTimeMillis() + 1);
+        assertThat(deletions(buffer)).containsOnlyKeys("m3");
+    }
+
+    @Test
+    void unloadedBuffersKeepTheirDeletions() {
+        RecentMessageCache.Buffer buffer = new RecentMessageCache.Buffer();
+        buffer.remove(message(1));
+
+        buffer.pruneDeletions(System.currentTimeMillis() + 1);
+
+        assertThat(deletions(buffer)).containsOnlyKeys("m1");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, long[]> deletions(RecentMessageCache.Buffer buffer) {
+        return (Map<String, long[]>) ReflectionTestUtils.getField(buffer, "deletions");
+    }
+
+    private static MessageResponse message(long timestamp) {
+        return new MessageResponse("m" + timestamp, "s1", "u1", "Alice", "hello", timestamp);
+    }
+}
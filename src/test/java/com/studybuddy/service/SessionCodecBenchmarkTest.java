@@ -0,0 +1,167 @@
+package com.studybuddy.service;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.TestSnapshots;
+import com.google.firestore.v1.ArrayValue;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.Value;
+import com.studybuddy.dto.SessionResponse;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Nanoseconds per session decoded by the old path (getData() copied into a map, then mapped)
+ * against SessionCodec reading fields straight off real DocumentSnapshots.
+ */
+@Tag("benchmark")
+class SessionCodecBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionCodecBenchmarkTest.class);
+
+    private static final int DOCUMENTS = 200;
+    private static final int PARTICIPANTS = 20;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int ROUNDS = 500;
+
+    @Test
+    void codecDecodesFasterThanGetData() {
+        long now = System.currentTimeMillis();
+        List<DocumentSnapshot> docs = new ArrayList<>(DOCUMENTS);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            docs.add(session("s" + i, now));
+        }
+
+        // Same answer either way before timing anything
+        for (DocumentSnapshot doc : docs) {
+            SessionResponse legacy = legacyDecode(doc.getId(), doc.getData(), now);
+            SessionResponse codec = SessionCodec.decode(doc, now);
+            assertThat(codec).usingRecursiveComparison().isEqualTo(legacy);
+        }
+
+        double legacy = nanosPerDocument(docs, doc -> legacyDecode(doc.getId(), doc.getData(), now));
+        double full = nanosPerDocument(docs, doc -> SessionCodec.decode(doc, now));
+        double summary = nanosPerDocument(docs, doc -> SessionCodec.decodeSummary(doc, now));
+        logger.info("getData() + map: {} ns/doc, codec full: {} ns/doc, codec summary: {} ns/doc",
+                Math.round(legacy), Math.round(full), Math.round(summary));
+
+        assertThat(full).isLessThan(legacy);
+        assertThat(summary).isLessThan(full);
+    }
+
+    private static double nanosPerDocument(List<DocumentSnapshot> docs, Function<DocumentSnapshot, Object> decode) {
+        Object sink = null;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (DocumentSnapshot doc : docs) {
+                sink = decode.apply(doc);
+            }
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (DocumentSnapshot doc : docs) {
+                sink = decode.apply(doc);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(sink).isNotNull();
+        return (double) elapsed / ((long) ROUNDS * docs.size());
+    }
+
+    /**
+     * The mapping SessionService used before SessionCodec, fed from getData()
+     */
+    @SuppressWarnings("unchecked")
+    private static SessionResponse legacyDecode(String id, Map<String, Object> data, long now) {
+        SessionResponse response = new SessionResponse();
+        response.setId(id);
+        response.setTitle((String) data.get("title"));
+        response.setModule((String) data.get("module"));
+        response.setYear((String) data.get("year"));
+        response.setDate((String) data.get("date"));
+        response.setTime((String) data.get("time"));
+        response.setDuration(((Long) data.get("duration")).intValue());
+        response.setMaxParticipants(((Long) data.get("maxParticipants")).intValue());
+
+        Object preferences = data.get("preferences");
+        if (preferences instanceof String) {
+            response.setPreferences(Arrays.stream(((String) preferences).split(","))
+                    .map(String::trim)
+                    .filter(preference -> !preference.isEmpty())
+                    .collect(Collectors.toList()));
+        } else {
+            response.setPreferences((List<String>) preferences);
+        }
+        response.setDescription((String) data.get("description"));
+
+        Long scheduledStartTime = (Long) data.get("scheduledStartTime");
+        response.setScheduledStartTime(scheduledStartTime);
+        response.setIsScheduled(scheduledStartTime > now);
+        response.setIsLive(scheduledStartTime <= now);
+
+        response.setStatus((String) data.get("status"));
+        response.setCreatorId((String) data.get("creatorId"));
+        response.setCreatorName((String) data.get("creatorName"));
+
+        List<String> participants = (List<String>) data.get("participants");
+        response.setParticipantCount(participants.size());
+        response.setSpotsLeft(response.getMaxParticipants() - participants.size());
+        response.setParticipants(participants);
+        response.setJoinRequests((List<String>) data.get("requests"));
+        return response;
+    }
+
+    private static DocumentSnapshot session(String id, long now) {
+        Document.Builder document = Document.newBuilder()
+                .putFields("title", string("Linear algebra revision " + id))
+                .putFields("module", string("MA1101"))
+                .putFields("year", string("Year 1"))
+                .putFields("date", string("2026-10-17"))
+                .putFields("time", string("14:00"))
+                .putFields("duration", integer(90))
+                .putFields("maxParticipants", integer(PARTICIPANTS + 5))
+                .putFields("preferences", array(List.of("quiet", "whiteboard", "online")))
+                .putFields("description", string("Working through past papers, chapter by chapter."))
+                .putFields("scheduledStartTime", integer(now + 3_600_000))
+                .putFields("isLive", Value.newBuilder().setBooleanValue(false).build())
+                .putFields("status", string("active"))
+                .putFields("creatorId", string("creator-" + id))
+                .putFields("creatorName", string("Alice"))
+                .putFields("spotsLeft", integer(5))
+                .putFields("createdAt", integer(now))
+                .putFields("participants", array(ids("user", PARTICIPANTS)))
+                .putFields("requests", array(ids("pending", 5)));
+        return TestSnapshots.fromDocument("sessions", id, document);
+    }
+
+    private static List<String> ids(String prefix, int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(prefix + i);
+        }
+        return ids;
+    }
+
+    private static Value string(String value) {
+        return Value.newBuilder().setStringValue(value).build();
+    }
+
+    private static Value integer(long value) {
+        return Value.newBuilder().setIntegerValue(value).build();
+    }
+
+    private static Value array(List<String> values) {
+        ArrayValue.Builder array = ArrayValue.newBuilder();
+        values.forEach(value -> array.addValues(string(value)));
+        return Value.newBuilder().setArrayValue(array).build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.studybuddy.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionMembershipCacheTest {
+
+    private DocumentReference sessionRef;
+    private ListenerRegistration registration;
+    private SimpleMeterRegistry meterRegistry;
+    private SessionMembershipCache cache;
+
+    @BeforeEach
+    void setUp() {
+        Firestore firestore = mock(Firestore.class);
+        CollectionReference sessions = mock(CollectionReference.class);
+        sessionRef = mock(DocumentReference.class);
+        registration = mock(ListenerRegistration.class);
+        when(firestore.collection("sessions")).thenReturn(sessions);
+        when(sessions.document("s1")).thenReturn(sessionRef);
+        when(sessionRef.addSnapshotListener(any())).thenReturn(registration);
+
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new SessionMembershipCache();
+        ReflectionTestUtils.setField(cache, "firestore", firestore);
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        cache.registerMetrics();
+    }
+
+    @Test
+    void missingSessionIsNotCachedOrListenedTo() {
+        DocumentSnapshot missing = snapshot(false, List.of());
+        when(sessionRef.get()).thenReturn(ApiFutures.immediateFuture(missing));
+
+        assertThatThrownBy(() -> cache.participants("s1").join())
+                .isInstanceOf(CompletionException.class)
+                .hasMessageContaining("Session not found");
+        assertThat(cache.isParticipant("s1", "alice")).isFalse();
+
+        verify(sessionRef, never()).addSnapshotListener(any());
+        assertThat(sessionCount()).isZero();
+    }
+
+    @Test
+    void existingSessionIsCachedWithOneListener() {
+        DocumentSnapshot session = snapshot(true, List.of("alice"));
+        when(sessionRef.get()).thenReturn(ApiFutures.immediateFuture(session));
+
+        assertThat(cache.participants("s1").join()).containsExactly("alice");
+        assertThat(cache.isParticipant("s1", "alice")).isTrue();
+
+        verify(sessionRef, times(1)).get();
+        verify(sessionRef, times(1)).addSnapshotListener(any());
+        assertThat(sessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentMissesShareOneRead() {
+        SettableApiFuture<DocumentSnapshot> read = SettableApiFuture.create();
+        when(sessionRef.get()).thenReturn(read);
+
+        CompletableFuture<Set<String>> first = cache.participants("s1");
+        CompletableFuture<Set<String>> second = cache.participants("s1");
+        read.set(snapshot(true, List.of("alice", "bob")));
+
+        assertThat(first.join()).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(second.join()).containsExactlyInAnyOrder("alice", "bob");
+        verify(sessionRef, times(1)).get();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deletedSessionStopsItsListener() {
+        DocumentSnapshot session = snapshot(true, List.of("alice"));
+        when(sessionRef.get()).thenReturn(ApiFutures.immediateFuture(session));
+        cache.participants("s1").join();
+        ArgumentCaptor<EventListener<DocumentSnapshot>> listener = ArgumentCaptor.forClass(EventListener.class);
+        verify(sessionRef).addSnapshotListener(listener.capture());
+
+        listener.getValue().onEvent(snapshot(false, List.of()), null);
+
+        verify(registration).remove();
+        assertThat(sessionCount()).isZero();
+    }
+
+    @Test
+    void kickDuringTheFirstReadKeepsTheReadOutOfTheCache() {
+        SettableApiFuture<DocumentSnapshot> read = SettableApiFuture.create();
+        when(sessionRef.get()).thenReturn(read);
+
+        CompletableFuture<Set<String>> participants = cache.participants("s1");
+        cache.removeParticipant("s1", "bob", Timestamp.now());
+        read.set(snapshot(true, List.of("alice", "bob")));
+
+        participants.join();
+        verify(sessionRef, never()).addSnapshotListener(any());
+        assertThat(sessionCount()).isZero();
+    }
+
+    private double sessionCount() {
+        return meterRegistry.get("chat.membership.sessions").gauge().value();
+    }
+
+    private static DocumentSnapshot snapshot(boolean exists, List<String> participants) {
+        DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+        when(snapshot.exists()).thenReturn(exists);
+        when(snapshot.get("participants")).thenReturn(exists ? participants : null);
+        when(snapshot.getUpdateTime()).thenReturn(exists ? Timestamp.now() : null);
+        when(snapshot.getReadTime()).thenReturn(Timestamp.now());
+        return snapshot;
+    }
+}
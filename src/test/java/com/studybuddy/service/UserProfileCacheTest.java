@@ -0,0 +1,96 @@
+package com.studybuddy.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.studybuddy.dto.UserResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserProfileCacheTest {
+
+    private DocumentReference userRef;
+    private UserProfileCache cache;
+
+    @BeforeEach
+    void setUp() {
+        Firestore firestore = mock(Firestore.class);
+        CollectionReference users = mock(CollectionReference.class);
+        userRef = mock(DocumentReference.class);
+        when(firestore.collection("users")).thenReturn(users);
+        when(users.document("u1")).thenReturn(userRef);
+
+        cache = new UserProfileCache();
+        ReflectionTestUtils.setField(cache, "firestore", firestore);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        cache.start();
+    }
+
+    @Test
+    void concurrentMissesShareOneRead() {
+        SettableApiFuture<DocumentSnapshot> read = SettableApiFuture.create();
+        when(userRef.get()).thenReturn(read);
+
+        CompletableFuture<UserResponse> first = cache.get("u1");
+        CompletableFuture<UserResponse> second = cache.get("u1");
+        read.set(user("Alice"));
+
+        assertThat(first.join().getName()).isEqualTo("Alice");
+        assertThat(second.join().getName()).isEqualTo("Alice");
+        assertThat(cache.get("u1").join().getName()).isEqualTo("Alice");
+        verify(userRef, times(1)).get();
+    }
+
+    @Test
+    void invalidationDuringALoadKeepsTheStaleReadOutOfTheCache() {
+        SettableApiFuture<DocumentSnapshot> staleRead = SettableApiFuture.create();
+        DocumentSnapshot renamed = user("Alice Smith");
+        when(userRef.get()).thenReturn(staleRead, ApiFutures.immediateFuture(renamed));
+
+        CompletableFuture<UserResponse> inFlight = cache.get("u1");
+        // A profile write lands while the read is still out
+        cache.invalidate("u1");
+        staleRead.set(user("Alice"));
+
+        // The caller already waiting gets what was read, but it isn't cached
+        assertThat(inFlight.join().getName()).isEqualTo("Alice");
+        assertThat(cache.get("u1").join().getName()).isEqualTo("Alice Smith");
+        verify(userRef, times(2)).get();
+    }
+
+    @Test
+    void missingUsersAreNotCached() {
+        DocumentSnapshot missing = mock(DocumentSnapshot.class);
+        when(missing.exists()).thenReturn(false);
+        DocumentSnapshot created = user("Bob");
+        when(userRef.get()).thenReturn(ApiFutures.immediateFuture(missing), ApiFutures.immediateFuture(created));
+
+        assertThat(cache.get("u1").join()).isNull();
+        assertThat(cache.get("u1").join().getName()).isEqualTo("Bob");
+        verify(userRef, times(2)).get();
+    }
+
+    private static DocumentSnapshot user(String name) {
+        DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+        when(snapshot.exists()).thenReturn(true);
+        when(snapshot.getData()).thenReturn(Map.of("name", name, "email", "u1@example.com", "year", "Year 1"));
+        return snapshot;
+    }
+}